@@ -28,13 +28,16 @@ import android.support.annotation.NonNull;
 import org.json.JSONObject;
 
 /**
- * Encapsulates the two possible outcomes of an API request: either a JSON object (success), or an error (failure).
- * One and only one is guaranteed to be non-null.
+ * Encapsulates the two possible outcomes of an API request: either a JSON object or raw content (success), or an error
+ * (failure). One and only one is guaranteed to be non-null.
  */
 class APIResult {
     /** The content returned (in case of success). */
     public final JSONObject content;
 
+    /** The raw content returned (in case of success of a request delivering raw results). */
+    public final byte[] rawContent;
+
     /** The error encountered (in case of failure). */
     public final AlgoliaException error;
 
@@ -45,6 +48,18 @@ class APIResult {
      */
     public APIResult(@NonNull JSONObject content) {
         this.content = content;
+        this.rawContent = null;
+        this.error = null;
+    }
+
+    /**
+     * Construct a new success result with raw content.
+     *
+     * @param rawContent The raw content returned, as UTF-8 encoded JSON.
+     */
+    public APIResult(@NonNull byte[] rawContent) {
+        this.content = null;
+        this.rawContent = rawContent;
         this.error = null;
     }
 
@@ -55,6 +70,7 @@ class APIResult {
      */
     public APIResult(@NonNull AlgoliaException error) {
         this.content = null;
+        this.rawContent = null;
         this.error = error;
     }
 
@@ -42,15 +42,21 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -88,6 +94,84 @@ public abstract class AbstractClient {
         }
     }
 
+    /**
+     * Priority of an asynchronous request.
+     * Declared in decreasing order of priority.
+     */
+    public enum RequestPriority {
+        /** Requests the user is waiting for, like searches. They may use all the threads of the pool. */
+        INTERACTIVE,
+        /**
+         * Requests running in the background, like task polling or browsing. At most
+         * {@link #getMaxBackgroundRequests()} of them run at the same time, so that the remaining threads stay
+         * available to interactive requests.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Statistics about the asynchronous requests run by a client.
+     * This is a snapshot: it is not updated after it has been retrieved.
+     */
+    public static class RequestStats
+    {
+        protected int runningCount;
+        protected int maxRunningCount;
+        protected int startedCount;
+        protected int completedCount;
+        protected int cancelledCount;
+        protected int abortedCount;
+        protected long totalRunTime;
+
+        /** Number of requests currently occupying a thread. */
+        public int getRunningCount()
+        {
+            return runningCount;
+        }
+
+        /** Maximum number of requests that have occupied a thread at the same time. */
+        public int getMaxRunningCount()
+        {
+            return maxRunningCount;
+        }
+
+        /** Number of requests that started running. */
+        public int getStartedCount()
+        {
+            return startedCount;
+        }
+
+        /** Number of requests that finished running, whether they were cancelled or not. */
+        public int getCompletedCount()
+        {
+            return completedCount;
+        }
+
+        /** Number of requests that were cancelled (before or while running). */
+        public int getCancelledCount()
+        {
+            return cancelledCount;
+        }
+
+        /** Number of in-flight network calls that were aborted due to cancellation. */
+        public int getAbortedCount()
+        {
+            return abortedCount;
+        }
+
+        /** Total time (ms) threads have spent running requests. */
+        public long getTotalRunTime()
+        {
+            return totalRunTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{running: %d, maxRunning: %d, started: %d, completed: %d, cancelled: %d, aborted: %d, totalRunTime: %d}", this.getClass().getSimpleName(), runningCount, maxRunningCount, startedCount, completedCount, cancelledCount, abortedCount, totalRunTime);
+        }
+    }
+
     private static class HostStatus {
         boolean isUp = true;
         long lastTryTimestamp;
@@ -105,6 +189,9 @@ public abstract class AbstractClient {
     /** This library's version. */
     private final static String version = "3.11.0";
 
+    /** Default maximum number of background requests running at the same time. */
+    public static final int DEFAULT_MAX_BACKGROUND_REQUESTS = 2;
+
     // ----------------------------------------------------------------------
     // Fields
     // ----------------------------------------------------------------------
@@ -147,6 +234,24 @@ public abstract class AbstractClient {
     /** Thread pool used to run asynchronous requests. */
     protected ExecutorService searchExecutorService = Executors.newFixedThreadPool(4);
 
+    /** Maximum number of background requests running at the same time. */
+    private volatile int maxBackgroundRequests = DEFAULT_MAX_BACKGROUND_REQUESTS;
+
+    /** Executor for background requests, throttling them before they reach {@link #searchExecutorService}. */
+    private final BackgroundExecutor backgroundExecutor = new BackgroundExecutor();
+
+    /**
+     * Executor used to abort the connections of cancelled requests.
+     * NOTE: Disconnecting may perform I/O, which is forbidden on the main thread.
+     */
+    protected ExecutorService cancellationExecutorService = Executors.newSingleThreadExecutor();
+
+    /** The asynchronous request being run by the current thread, if any. */
+    private final ThreadLocal<AsyncTaskRequest> currentRequest = new ThreadLocal<>();
+
+    /** Statistics about asynchronous requests. Guarded by itself. */
+    private final RequestStats requestStats = new RequestStats();
+
     protected Map<String, WeakReference<Object>> indices = new HashMap<>();
 
     // ----------------------------------------------------------------------
@@ -311,6 +416,51 @@ public abstract class AbstractClient {
         this.hostDownDelay = hostDownDelay;
     }
 
+    /**
+     * Get the maximum number of background requests running at the same time.
+     *
+     * @return The maximum number of background requests.
+     */
+    public int getMaxBackgroundRequests() {
+        return maxBackgroundRequests;
+    }
+
+    /**
+     * Set the maximum number of background requests running at the same time.
+     * It should be lower than the number of threads running asynchronous requests (4), so that background requests
+     * never delay interactive ones.
+     *
+     * @param maxBackgroundRequests The maximum number of background requests. Must be strictly positive.
+     */
+    public void setMaxBackgroundRequests(int maxBackgroundRequests) {
+        if (maxBackgroundRequests <= 0) {
+            throw new IllegalArgumentException("Maximum number of background requests must be strictly positive");
+        }
+        this.maxBackgroundRequests = maxBackgroundRequests;
+        // Take advantage of a higher limit right away.
+        backgroundExecutor.dispatch();
+    }
+
+    /**
+     * Get statistics about the asynchronous requests run by this client, in particular the occupancy of the threads
+     * running them.
+     *
+     * @return A snapshot of the request statistics.
+     */
+    public @NonNull RequestStats getRequestStats() {
+        RequestStats stats = new RequestStats();
+        synchronized (requestStats) {
+            stats.runningCount = requestStats.runningCount;
+            stats.maxRunningCount = requestStats.maxRunningCount;
+            stats.startedCount = requestStats.startedCount;
+            stats.completedCount = requestStats.completedCount;
+            stats.cancelledCount = requestStats.cancelledCount;
+            stats.abortedCount = requestStats.abortedCount;
+            stats.totalRunTime = requestStats.totalRunTime;
+        }
+        return stats;
+    }
+
     /**
      * Add a software library to the list of user agents.
      *
@@ -384,27 +534,48 @@ public abstract class AbstractClient {
     }
 
     protected byte[] getRequestRaw(String url, boolean search) throws AlgoliaException {
-        return _requestRaw(Method.GET, url, null, getReadHostsThatAreUp(), connectTimeout, search ? searchTimeout : readTimeout);
+        return getRequestRaw(url, search, 0);
+    }
+
+    /**
+     * @param requestTimeout Overall timeout of the request (ms), including retries; 0 for none.
+     */
+    protected byte[] getRequestRaw(String url, boolean search, int requestTimeout) throws AlgoliaException {
+        return _requestRaw(Method.GET, url, null, getReadHostsThatAreUp(), connectTimeout, search ? searchTimeout : readTimeout, requestTimeout);
     }
 
     protected JSONObject getRequest(String url, boolean search) throws AlgoliaException {
-        return _request(Method.GET, url, null, getReadHostsThatAreUp(), connectTimeout, search ? searchTimeout : readTimeout);
+        return _request(Method.GET, url, null, getReadHostsThatAreUp(), connectTimeout, search ? searchTimeout : readTimeout, 0);
     }
 
     protected JSONObject deleteRequest(String url) throws AlgoliaException {
-        return _request(Method.DELETE, url, null, getWriteHostsThatAreUp(), connectTimeout, readTimeout);
+        return _request(Method.DELETE, url, null, getWriteHostsThatAreUp(), connectTimeout, readTimeout, 0);
     }
 
     protected JSONObject postRequest(String url, String obj, boolean readOperation) throws AlgoliaException {
-        return _request(Method.POST, url, obj, (readOperation ? getReadHostsThatAreUp() : getWriteHostsThatAreUp()), connectTimeout, (readOperation ? searchTimeout : readTimeout));
+        return postRequest(url, obj, readOperation, 0);
+    }
+
+    /**
+     * @param requestTimeout Overall timeout of the request (ms), including retries; 0 for none.
+     */
+    protected JSONObject postRequest(String url, String obj, boolean readOperation, int requestTimeout) throws AlgoliaException {
+        return _request(Method.POST, url, obj, (readOperation ? getReadHostsThatAreUp() : getWriteHostsThatAreUp()), connectTimeout, (readOperation ? searchTimeout : readTimeout), requestTimeout);
     }
 
     protected byte[] postRequestRaw(String url, String obj, boolean readOperation) throws AlgoliaException {
-        return _requestRaw(Method.POST, url, obj, (readOperation ? getReadHostsThatAreUp() : getWriteHostsThatAreUp()), connectTimeout, (readOperation ? searchTimeout : readTimeout));
+        return postRequestRaw(url, obj, readOperation, 0);
+    }
+
+    /**
+     * @param requestTimeout Overall timeout of the request (ms), including retries; 0 for none.
+     */
+    protected byte[] postRequestRaw(String url, String obj, boolean readOperation, int requestTimeout) throws AlgoliaException {
+        return _requestRaw(Method.POST, url, obj, (readOperation ? getReadHostsThatAreUp() : getWriteHostsThatAreUp()), connectTimeout, (readOperation ? searchTimeout : readTimeout), requestTimeout);
     }
 
     protected JSONObject putRequest(String url, String obj) throws AlgoliaException {
-        return _request(Method.PUT, url, obj, getWriteHostsThatAreUp(), connectTimeout, readTimeout);
+        return _request(Method.PUT, url, obj, getWriteHostsThatAreUp(), connectTimeout, readTimeout, 0);
     }
 
     /**
@@ -472,12 +643,13 @@ public abstract class AbstractClient {
      * @param hostsArray     array of hosts to try successively
      * @param connectTimeout maximum wait time to open connection
      * @param readTimeout    maximum time to read data on socket
+     * @param requestTimeout overall timeout of the request, including retries (0 for none)
      * @return a JSONObject containing the resulting data or error
      * @throws AlgoliaException if the request data is not valid json
      */
-    private JSONObject _request(Method m, String url, String json, List<String> hostsArray, int connectTimeout, int readTimeout) throws AlgoliaException {
+    private JSONObject _request(Method m, String url, String json, List<String> hostsArray, int connectTimeout, int readTimeout, int requestTimeout) throws AlgoliaException {
         try {
-            return _getJSONObject(_requestRaw(m, url, json, hostsArray, connectTimeout, readTimeout));
+            return _getJSONObject(_requestRaw(m, url, json, hostsArray, connectTimeout, readTimeout, requestTimeout));
         } catch (JSONException e) {
             throw new AlgoliaException("JSON decode error:" + e.getMessage());
         } catch (UnsupportedEncodingException e) {
@@ -494,14 +666,36 @@ public abstract class AbstractClient {
      * @param hostsArray     array of hosts to try successively
      * @param connectTimeout maximum wait time to open connection
      * @param readTimeout    maximum time to read data on socket
+     * @param requestTimeout overall timeout of the request, including retries (0 for none)
      * @return a JSONObject containing the resulting data or error
      * @throws AlgoliaException in case of connection or data handling error
      */
-    private byte[] _requestRaw(Method m, String url, String json, List<String> hostsArray, int connectTimeout, int readTimeout) throws AlgoliaException {
+    private byte[] _requestRaw(Method m, String url, String json, List<String> hostsArray, int connectTimeout, int readTimeout, int requestTimeout) throws AlgoliaException {
         String requestMethod;
         List<Exception> errors = new ArrayList<>(hostsArray.size());
+        // If run by an asynchronous request, its connections are aborted when it is cancelled.
+        final AsyncTaskRequest request = currentRequest.get();
+        final long deadline = requestTimeout > 0 ? System.currentTimeMillis() + requestTimeout : 0;
+        boolean deadlineExpired = false;
         // for each host
         for (String host : hostsArray) {
+            // Don't bother trying other hosts if the request has been cancelled.
+            if (request != null && request.isCancelled()) {
+                throw new AlgoliaException("Request cancelled");
+            }
+            // Cap the timeouts of this attempt by the time remaining until the deadline, if any.
+            int hostConnectTimeout = connectTimeout;
+            int hostReadTimeout = readTimeout;
+            if (deadline != 0) {
+                long remainingTime = deadline - System.currentTimeMillis();
+                if (remainingTime <= 0) {
+                    deadlineExpired = true;
+                    break;
+                }
+                hostConnectTimeout = (int)Math.min(connectTimeout, remainingTime);
+                hostReadTimeout = (int)Math.min(readTimeout, remainingTime);
+            }
+            final boolean timeoutsCapped = hostConnectTimeout < connectTimeout || hostReadTimeout < readTimeout;
             switch (m) {
                 case DELETE:
                     requestMethod = "DELETE";
@@ -525,11 +719,14 @@ public abstract class AbstractClient {
             try {
                 URL hostURL = new URL("https://" + host + url);
                 hostConnection = (HttpURLConnection) hostURL.openConnection();
+                if (request != null) {
+                    request.attachConnection(hostConnection);
+                }
 
                 //set timeouts
                 hostConnection.setRequestMethod(requestMethod);
-                hostConnection.setConnectTimeout(connectTimeout);
-                hostConnection.setReadTimeout(readTimeout);
+                hostConnection.setConnectTimeout(hostConnectTimeout);
+                hostConnection.setReadTimeout(hostReadTimeout);
 
                 // set auth headers
                 hostConnection.setRequestProperty("X-Algolia-Application-Id", this.applicationID);
@@ -597,10 +794,20 @@ public abstract class AbstractClient {
                 consumeQuietly(hostConnection);
                 throw new AlgoliaException("Invalid encoding returned by server", e);
             } catch (IOException e) { // host error, continue on the next host
-                hostStatuses.put(host, new HostStatus(false));
+                // An aborted connection says nothing about the host's health.
+                if (request != null && request.isCancelled()) {
+                    throw new AlgoliaException("Request cancelled", e);
+                }
+                // Neither does a timeout shortened by the request's deadline.
+                if (!(timeoutsCapped && e instanceof SocketTimeoutException)) {
+                    hostStatuses.put(host, new HostStatus(false));
+                }
                 consumeQuietly(hostConnection);
                 errors.add(e);
             } finally {
+                if (request != null && hostConnection != null) {
+                    request.detachConnection(hostConnection);
+                }
                 if (stream != null) {
                     try {
                         stream.close();
@@ -611,9 +818,9 @@ public abstract class AbstractClient {
             }
         }
 
-        String errorMessage = "All hosts failed: " + Arrays.toString(errors.toArray());
+        String errorMessage = (deadlineExpired ? "Request timed out after " + requestTimeout + " ms: " : "All hosts failed: ") + Arrays.toString(errors.toArray());
         // When several errors occurred, use the last one as the cause for the returned exception.
-        Throwable lastError = errors.get(errors.size() - 1);
+        Throwable lastError = errors.isEmpty() ? null : errors.get(errors.size() - 1);
         throw new AlgoliaException(errorMessage, lastError);
     }
 
@@ -669,6 +876,64 @@ public abstract class AbstractClient {
     // Utils
     // ----------------------------------------------------------------------
 
+    /**
+     * Executor queueing background requests, and submitting them to the {@link #searchExecutorService} in order, as
+     * long as less than {@link #maxBackgroundRequests} of them are running.
+     */
+    private class BackgroundExecutor implements Executor {
+        /** Requests waiting for a slot. */
+        private final Deque<Runnable> pendingCommands = new ArrayDeque<>();
+
+        /** Number of requests submitted to the underlying executor and not yet finished. */
+        private int runningCount = 0;
+
+        @Override
+        public void execute(@NonNull final Runnable command) {
+            synchronized (this) {
+                pendingCommands.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            synchronized (BackgroundExecutor.this) {
+                                runningCount -= 1;
+                            }
+                            dispatch();
+                        }
+                    }
+                });
+            }
+            dispatch();
+        }
+
+        void dispatch() {
+            List<Runnable> commandsToStart = new ArrayList<>();
+            synchronized (this) {
+                while (runningCount < maxBackgroundRequests && !pendingCommands.isEmpty()) {
+                    runningCount += 1;
+                    commandsToStart.add(pendingCommands.poll());
+                }
+            }
+            // Start the commands *outside* of the critical section, because the executor may run them synchronously.
+            for (int i = 0; i < commandsToStart.size(); ++i) {
+                try {
+                    searchExecutorService.execute(commandsToStart.get(i));
+                } catch (RejectedExecutionException e) {
+                    // Release the slots of the rejected command and of the ones not started yet. The latter are put
+                    // back in front of the queue; the rejected one is dropped, as any direct submission would be.
+                    synchronized (this) {
+                        runningCount -= commandsToStart.size() - i;
+                        for (int j = commandsToStart.size() - 1; j > i; --j) {
+                            pendingCommands.addFirst(commandsToStart.get(j));
+                        }
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
     /**
      * Abstract {@link Request} implementation using an `AsyncTask`.
      * Derived classes just have to implement the {@link #run()} method.
@@ -678,29 +943,46 @@ public abstract class AbstractClient {
         private CompletionHandler completionHandler;
 
         /** The executor used to execute the request. */
-        private ExecutorService executorService;
+        private Executor executor;
 
         private boolean finished = false;
 
+        private volatile boolean cancelled = false;
+
+        /** The network connection currently used by this request, if any. */
+        private final AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+
         /**
          * The underlying asynchronous task.
          */
         private AsyncTask<Void, Void, APIResult> task = new AsyncTask<Void, Void, APIResult>() {
             @Override
             protected APIResult doInBackground(Void... params) {
+                currentRequest.set(AsyncTaskRequest.this);
+                final long startTime = System.currentTimeMillis();
+                synchronized (requestStats) {
+                    requestStats.startedCount += 1;
+                    requestStats.runningCount += 1;
+                    requestStats.maxRunningCount = Math.max(requestStats.maxRunningCount, requestStats.runningCount);
+                }
                 try {
-                    return new APIResult(run());
+                    return runForResult();
                 } catch (AlgoliaException e) {
                     return new APIResult(e);
+                } finally {
+                    currentRequest.remove();
+                    synchronized (requestStats) {
+                        requestStats.runningCount -= 1;
+                        requestStats.completedCount += 1;
+                        requestStats.totalRunTime += System.currentTimeMillis() - startTime;
+                    }
                 }
             }
 
             @Override
             protected void onPostExecute(APIResult result) {
                 finished = true;
-                if (completionHandler != null) {
-                    completionHandler.requestCompleted(result.content, result.error);
-                }
+                deliver(result);
             }
 
             @Override
@@ -715,18 +997,29 @@ public abstract class AbstractClient {
          * @param completionHandler The completion handler to be notified of results. May be null if the caller omitted it.
          */
         protected AsyncTaskRequest(@Nullable CompletionHandler completionHandler) {
-            this(completionHandler, searchExecutorService);
+            this(completionHandler, RequestPriority.INTERACTIVE);
+        }
+
+        /**
+         * Construct a new request with the specified completion handler, executing on the client's default executor
+         * with the specified priority.
+         *
+         * @param completionHandler The completion handler to be notified of results. May be null if the caller omitted it.
+         * @param priority Priority of the request.
+         */
+        protected AsyncTaskRequest(@Nullable CompletionHandler completionHandler, @NonNull RequestPriority priority) {
+            this(completionHandler, priority == RequestPriority.BACKGROUND ? backgroundExecutor : searchExecutorService);
         }
 
         /**
          * Construct a new request with the specified completion handler, executing on the specified executor.
          *
          * @param completionHandler The completion handler to be notified of results. May be null if the caller omitted it.
-         * @param executorService Executor service on which to execute the request.
+         * @param executor Executor on which to execute the request.
          */
-        protected AsyncTaskRequest(@Nullable CompletionHandler completionHandler, @NonNull ExecutorService executorService) {
+        protected AsyncTaskRequest(@Nullable CompletionHandler completionHandler, @NonNull Executor executor) {
             this.completionHandler = completionHandler;
-            this.executorService = executorService;
+            this.executor = executor;
         }
 
         /**
@@ -742,6 +1035,28 @@ public abstract class AbstractClient {
         @NonNull
         abstract protected JSONObject run() throws AlgoliaException;
 
+        /**
+         * Run this request synchronously and wrap its outcome. Overridden by requests delivering raw results.
+         *
+         * @return The request's result.
+         * @throws AlgoliaException If an error was encountered.
+         */
+        @NonNull
+        APIResult runForResult() throws AlgoliaException {
+            return new APIResult(run());
+        }
+
+        /**
+         * Notify the completion handler of this request's result. Overridden by requests delivering raw results.
+         *
+         * @param result The request's result.
+         */
+        void deliver(@NonNull APIResult result) {
+            if (completionHandler != null) {
+                completionHandler.requestCompleted(result.content, result.error);
+            }
+        }
+
         /**
          * Run this request asynchronously.
          *
@@ -751,7 +1066,7 @@ public abstract class AbstractClient {
             // WARNING: Starting with Honeycomb (3.0), `AsyncTask` execution is serial, so we must force parallel
             // execution. See <http://developer.android.com/reference/android/os/AsyncTask.html>.
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                task.executeOnExecutor(executorService);
+                task.executeOnExecutor(executor);
             } else {
                 task.execute();
             }
@@ -762,15 +1077,59 @@ public abstract class AbstractClient {
          * Cancel this request.
          * The listener will not be called after a request has been cancelled.
          * <p>
-         * WARNING: Cancelling a request may or may not cancel the underlying network call, depending how late the
-         * cancellation happens. In other words, a cancelled request may have already been executed by the server. In any
-         * case, cancelling never carries "undo" semantics.
+         * If a network call is in progress, its connection is aborted, which releases the thread running the request
+         * right away; remaining hosts are not tried.
+         * </p>
+         * <p>
+         * WARNING: A cancelled request may have already been executed by the server. In any case, cancelling never
+         * carries "undo" semantics.
          * </p>
          */
         @Override
         public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            synchronized (requestStats) {
+                requestStats.cancelledCount += 1;
+            }
             // NOTE: We interrupt the task's thread to better cope with timeouts.
             task.cancel(true /* mayInterruptIfRunning */);
+            abortConnection();
+        }
+
+        /**
+         * Register the connection used by this request's current network call.
+         * If the request has already been cancelled, the connection is aborted immediately.
+         */
+        private void attachConnection(@NonNull HttpURLConnection hostConnection) {
+            connection.set(hostConnection);
+            if (cancelled) {
+                abortConnection();
+            }
+        }
+
+        /** Unregister a connection once its network call is over. */
+        private void detachConnection(@NonNull HttpURLConnection hostConnection) {
+            connection.compareAndSet(hostConnection, null);
+        }
+
+        private void abortConnection() {
+            final HttpURLConnection hostConnection = connection.getAndSet(null);
+            if (hostConnection == null) {
+                return;
+            }
+            synchronized (requestStats) {
+                requestStats.abortedCount += 1;
+            }
+            // Blocking I/O on the connection will fail, releasing the request's thread.
+            cancellationExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    hostConnection.disconnect();
+                }
+            });
         }
 
         /**
@@ -790,7 +1149,63 @@ public abstract class AbstractClient {
          */
         @Override
         public boolean isCancelled() {
-            return task.isCancelled();
+            return cancelled;
+        }
+    }
+
+    /**
+     * Abstract {@link Request} implementation delivering raw results, i.e. without parsing them.
+     * Derived classes just have to implement the {@link #runRaw()} method.
+     */
+    abstract protected class AsyncRawTaskRequest extends AsyncTaskRequest {
+        /** The completion handler notified of the raw result. */
+        private final RawCompletionHandler rawCompletionHandler;
+
+        /**
+         * Construct a new request with the specified completion handler, executing on the specified executor.
+         *
+         * @param completionHandler The completion handler to be notified of results.
+         * @param executor Executor on which to execute the request.
+         */
+        protected AsyncRawTaskRequest(@NonNull RawCompletionHandler completionHandler, @NonNull Executor executor) {
+            super((CompletionHandler)null, executor);
+            this.rawCompletionHandler = completionHandler;
+        }
+
+        /**
+         * Run this request synchronously. To be implemented by derived classes.
+         * <p>
+         * <strong>Do not call this method directly.</strong> Will be run in a background thread when calling
+         * {@link #start()}.
+         * </p>
+         *
+         * @return The request's result, as UTF-8 encoded JSON.
+         * @throws AlgoliaException If an error was encountered.
+         */
+        @NonNull
+        abstract protected byte[] runRaw() throws AlgoliaException;
+
+        @NonNull
+        @Override
+        protected JSONObject run() throws AlgoliaException {
+            try {
+                return _getJSONObject(runRaw());
+            } catch (JSONException e) {
+                throw new AlgoliaException("JSON decode error:" + e.getMessage());
+            } catch (UnsupportedEncodingException e) {
+                throw new AlgoliaException("UTF-8 decode error:" + e.getMessage());
+            }
+        }
+
+        @NonNull
+        @Override
+        APIResult runForResult() throws AlgoliaException {
+            return new APIResult(runRaw());
+        }
+
+        @Override
+        void deliver(@NonNull APIResult result) {
+            rawCompletionHandler.requestCompleted(result.rawContent, result.error);
         }
     }
 }
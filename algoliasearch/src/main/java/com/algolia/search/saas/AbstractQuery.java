@@ -30,9 +30,8 @@ import android.text.TextUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -46,6 +45,12 @@ import java.util.TreeMap;
 // - higher-level, typed accessors.
 // The latter simply serialize their values into the untyped map and parse
 // them back from it.
+//
+// To make copies cheap, the untyped map is split into an immutable base
+// and a small map of local changes, both shared between copies. Neither map
+// is ever modified in place: writers replace the (small) map of changes with
+// a modified copy, so that copying a query never has to touch the source.
+// See `baseParameters` and `changedParameters`.
 // ----------------------------------------------------------------------
 
 /**
@@ -109,9 +114,23 @@ public abstract class AbstractQuery {
     // Fields
     // ----------------------------------------------------------------------
 
-    /** Query parameters, as an untyped key-value array. */
-    // NOTE: Using a tree map to have parameters sorted by key on output.
-    @NonNull private Map<String, String> parameters = new TreeMap<>();
+    // Query parameters, as an untyped key-value array.
+    // NOTE: Using tree maps to have parameters sorted by key on output.
+
+    /** Base parameters. Never modified: it may be shared with other queries. */
+    @NonNull private TreeMap<String, String> baseParameters = new TreeMap<>();
+
+    /**
+     * Changes to the base parameters. A `null` value denotes a removed parameter.
+     * Never modified: it may be shared with other queries. Writers replace it with a modified copy instead.
+     */
+    @NonNull private TreeMap<String, String> changedParameters = new TreeMap<>();
+
+    /** Maximum number of changes before they are merged into a new base. */
+    private static final int MAX_CHANGED_PARAMETERS = 8;
+
+    /** Cached result of {@link #build()}, or `null` if not computed yet. Invalidated by every modification. */
+    @Nullable private String builtParameters;
 
     // ----------------------------------------------------------------------
     // Construction
@@ -125,10 +144,18 @@ public abstract class AbstractQuery {
 
     /**
      * Clone an existing query.
+     * This is a constant time operation: both queries share their parameters until either of them is modified.
+     * The cloned query is left untouched.
+     *
+     * **Warning:** Like any other access, cloning a query is not thread-safe: it must not happen concurrently with a
+     * modification of the cloned query.
+     *
      * @param other The query to be cloned.
      */
     protected AbstractQuery(@NonNull AbstractQuery other) {
-        parameters = new TreeMap<>(other.parameters);
+        baseParameters = other.baseParameters;
+        changedParameters = other.changedParameters;
+        builtParameters = other.builtParameters;
     }
 
     // ----------------------------------------------------------------------
@@ -137,12 +164,12 @@ public abstract class AbstractQuery {
 
     @Override
     public boolean equals(@Nullable Object other) {
-        return other != null && other instanceof AbstractQuery && this.parameters.equals(((AbstractQuery)other).parameters);
+        return other != null && other instanceof AbstractQuery && this.getParameters().equals(((AbstractQuery)other).getParameters());
     }
 
     @Override
     public int hashCode() {
-        return parameters.hashCode();
+        return getParameters().hashCode();
     }
 
     // ----------------------------------------------------------------------
@@ -164,53 +191,185 @@ public abstract class AbstractQuery {
 
     /**
      * Build the URL query parameter string representing this object.
+     *
+     * **Note:** The result is cached until the query is modified, so calling this method repeatedly is cheap.
+     *
      * @return A string suitable for use inside the query part of a URL (i.e. after the question mark).
      */
     public @NonNull String build() {
-        StringBuilder stringBuilder = new StringBuilder();
-        try {
-            for (Map.Entry<String, String> entry : parameters.entrySet()) {
-                String key = entry.getKey();
-                if (stringBuilder.length() > 0)
-                    stringBuilder.append('&');
-                stringBuilder.append(urlEncode(key));
+        String result = builtParameters;
+        if (result == null) {
+            StringBuilder stringBuilder = new StringBuilder();
+            // Merge the base parameters and the changes on the fly (both are sorted by key).
+            Iterator<Map.Entry<String, String>> baseIterator = baseParameters.entrySet().iterator();
+            Iterator<Map.Entry<String, String>> changeIterator = changedParameters.entrySet().iterator();
+            Map.Entry<String, String> baseEntry = baseIterator.hasNext() ? baseIterator.next() : null;
+            Map.Entry<String, String> changeEntry = changeIterator.hasNext() ? changeIterator.next() : null;
+            while (baseEntry != null || changeEntry != null) {
+                int order = baseEntry == null ? 1 : changeEntry == null ? -1 : baseEntry.getKey().compareTo(changeEntry.getKey());
+                Map.Entry<String, String> entry;
+                if (order < 0) {
+                    entry = baseEntry;
+                    baseEntry = baseIterator.hasNext() ? baseIterator.next() : null;
+                } else {
+                    // A change overrides the base parameter with the same key, if any.
+                    entry = changeEntry;
+                    if (order == 0) {
+                        baseEntry = baseIterator.hasNext() ? baseIterator.next() : null;
+                    }
+                    changeEntry = changeIterator.hasNext() ? changeIterator.next() : null;
+                }
                 String value = entry.getValue();
-                if (value != null) {
-                    stringBuilder.append('=');
-                    stringBuilder.append(urlEncode(value));
+                if (value == null) {
+                    continue; // removed parameter
                 }
+                if (stringBuilder.length() > 0)
+                    stringBuilder.append('&');
+                urlEncode(entry.getKey(), stringBuilder);
+                stringBuilder.append('=');
+                urlEncode(value, stringBuilder);
+            }
+            result = builtParameters = stringBuilder.toString();
+        }
+        return result;
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Percent-encode a string as UTF-8 and append it to a builder.
+     * The output is the same as `URLEncoder.encode(value, "UTF-8")`, except that space is encoded as `%20` instead of
+     * `+` (this works because `+` itself is percent-escaped into `%2B`).
+     */
+    private static void urlEncode(@NonNull String value, @NonNull StringBuilder builder) {
+        final int length = value.length();
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_') {
+                builder.append(c);
+            } else if (c < 0x80) {
+                appendEscapedByte(builder, c);
+            } else if (c < 0x800) {
+                appendEscapedByte(builder, 0xC0 | (c >> 6));
+                appendEscapedByte(builder, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscapedByte(builder, 0xF0 | (codePoint >> 18));
+                appendEscapedByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscapedByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscapedByte(builder, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: replaced by a question mark, like the UTF-8 encoder does.
+                appendEscapedByte(builder, '?');
+            } else {
+                appendEscapedByte(builder, 0xE0 | (c >> 12));
+                appendEscapedByte(builder, 0x80 | ((c >> 6) & 0x3F));
+                appendEscapedByte(builder, 0x80 | (c & 0x3F));
             }
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e); // should never happen: UTF-8 is always supported
         }
-        return stringBuilder.toString();
     }
 
-    static private String urlEncode(String value) throws UnsupportedEncodingException {
-        // NOTE: We prefer to have space encoded as `%20` instead of `+`, so we patch `URLEncoder`'s behaviour.
-        // This works because `+` itself is percent-escaped (into `%2B`).
-        return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    private static void appendEscapedByte(@NonNull StringBuilder builder, int b) {
+        builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
     }
 
     /**
      * Parse a URL query parameter string and store the resulting parameters into this query.
+     * Invalid parameters (e.g. with more than one `=` sign) are ignored.
+     *
      * @param queryParameters URL query parameter string.
+     * @throws IllegalArgumentException if a parameter contains an invalid escape (`%`) pattern.
      */
     public void parseFrom(@NonNull String queryParameters) {
-        try {
-            String[] parameters = queryParameters.split("&");
-            for (String parameter : parameters) {
-                String[] components = parameter.split("=");
-                if (components.length < 1 || components.length > 2)
-                    continue; // ignore invalid values
-                String name = URLDecoder.decode(components[0], "UTF-8");
-                String value = components.length >= 2 ? URLDecoder.decode(components[1], "UTF-8") : null;
-                set(name, value);
-            } // for each parameter
-        } catch (UnsupportedEncodingException e) {
-            // Should never happen since UTF-8 is one of the default encodings.
-            throw new RuntimeException(e);
+        // NOTE: Parsed in a single pass, without regular expressions nor intermediate arrays.
+        final int length = queryParameters.length();
+        int start = 0;
+        while (start < length) {
+            int end = queryParameters.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            parseParameter(queryParameters, start, end);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Parse a single `name=value` pair and store it into this query.
+     * A missing or empty value removes the parameter.
+     */
+    private void parseParameter(@NonNull String string, int start, int end) {
+        // Trailing equal signs denote empty components, which are dropped.
+        while (end > start && string.charAt(end - 1) == '=') {
+            --end;
         }
+        if (start == end) {
+            return; // ignore empty parameters
+        }
+        int separator = -1;
+        for (int i = start; i < end; ++i) {
+            if (string.charAt(i) == '=') {
+                if (separator >= 0) {
+                    return; // ignore invalid values
+                }
+                separator = i;
+            }
+        }
+        if (separator < 0) {
+            set(urlDecode(string, start, end), null);
+        } else {
+            set(urlDecode(string, start, separator), urlDecode(string, separator + 1, end));
+        }
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Decode a portion of a URL-encoded string.
+     * The output is the same as `URLDecoder.decode(value, "UTF-8")`.
+     */
+    private static @NonNull String urlDecode(@NonNull String string, int start, int end) {
+        // Fast path: nothing to decode.
+        int i = start;
+        while (i < end && string.charAt(i) != '%' && string.charAt(i) != '+') {
+            ++i;
+        }
+        if (i == end) {
+            return string.substring(start, end);
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        builder.append(string, start, i);
+        byte[] bytes = null;
+        while (i < end) {
+            char c = string.charAt(i);
+            if (c == '+') {
+                builder.append(' ');
+                ++i;
+            } else if (c == '%') {
+                // Consecutive escaped bytes are decoded together, as they may form a multi-byte character.
+                if (bytes == null) {
+                    bytes = new byte[(end - i) / 3];
+                }
+                int count = 0;
+                while (i < end && string.charAt(i) == '%') {
+                    if (i + 2 >= end) {
+                        throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+                    }
+                    int high = Character.digit(string.charAt(i + 1), 16);
+                    int low = Character.digit(string.charAt(i + 2), 16);
+                    if (high < 0 || low < 0) {
+                        throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern");
+                    }
+                    bytes[count++] = (byte)((high << 4) | low);
+                    i += 3;
+                }
+                builder.append(new String(bytes, 0, count, UTF8));
+            } else {
+                builder.append(c);
+                ++i;
+            }
+        }
+        return builder.toString();
     }
 
     protected static @Nullable Boolean parseBoolean(@Nullable String value) {
@@ -290,10 +449,18 @@ public abstract class AbstractQuery {
      * @return This instance (used to chain calls).
      */
     public @NonNull AbstractQuery set(@NonNull String name, @Nullable Object value) {
-        if (value == null) {
-            parameters.remove(name);
+        builtParameters = null;
+        // Copy on write: the current changes may be shared with other queries.
+        TreeMap<String, String> changes = new TreeMap<>(changedParameters);
+        if (value == null && !baseParameters.containsKey(name)) {
+            changes.remove(name);
         } else {
-            parameters.put(name, value.toString());
+            changes.put(name, value == null ? null : value.toString());
+        }
+        changedParameters = changes;
+        if (changedParameters.size() > MAX_CHANGED_PARAMETERS) {
+            baseParameters = getParameters();
+            changedParameters = new TreeMap<>();
         }
         return this;
     }
@@ -304,6 +471,26 @@ public abstract class AbstractQuery {
      * @return The parameter's value, or null if a parameter with the specified name does not exist.
      */
     public @Nullable String get(@NonNull String name) {
-        return parameters.get(name);
+        return changedParameters.containsKey(name) ? changedParameters.get(name) : baseParameters.get(name);
+    }
+
+    /**
+     * Get the effective parameters, i.e. the base parameters with the changes applied.
+     *
+     * @return The effective parameters. Must not be modified.
+     */
+    private @NonNull TreeMap<String, String> getParameters() {
+        if (changedParameters.isEmpty()) {
+            return baseParameters;
+        }
+        TreeMap<String, String> parameters = new TreeMap<>(baseParameters);
+        for (Map.Entry<String, String> entry : changedParameters.entrySet()) {
+            if (entry.getValue() == null) {
+                parameters.remove(entry.getKey());
+            } else {
+                parameters.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return parameters;
     }
 }
\ No newline at end of file
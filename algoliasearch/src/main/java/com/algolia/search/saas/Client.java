@@ -59,6 +59,15 @@ public class Client extends AbstractClient {
      */
     protected Map<String, WeakReference<Object>> indices = new HashMap<>();
 
+    /** Default maximum time (in milliseconds) a search request is held before being sent, when batching searches. */
+    public static final long DEFAULT_SEARCH_BATCHING_DELAY = 10;
+
+    /** Default maximum number of search requests sent together, when batching searches. */
+    public static final int DEFAULT_MAX_SEARCH_BATCH_SIZE = 20;
+
+    /** Batcher for search requests, or `null` if search batching is disabled. */
+    volatile SearchBatcher searchBatcher;
+
     // ----------------------------------------------------------------------
     // Initialization
     // ----------------------------------------------------------------------
@@ -122,6 +131,64 @@ public class Client extends AbstractClient {
         return super.getApplicationID();
     }
 
+    // ----------------------------------------------------------------------
+    // Search batching
+    // ----------------------------------------------------------------------
+
+    /**
+     * Enable search batching with default parameters.
+     * See {@link #enableSearchBatching(long, int)}.
+     */
+    public void enableSearchBatching() {
+        enableSearchBatching(DEFAULT_SEARCH_BATCHING_DELAY, DEFAULT_MAX_SEARCH_BATCH_SIZE);
+    }
+
+    /**
+     * Enable search batching.
+     * When enabled, searches issued through {@link Index#searchAsync(Query, CompletionHandler)} within a short time
+     * window (e.g. by several widgets of a federated search screen) are grouped into a single multiple queries API
+     * call, saving round-trips. The results are dispatched back to each search's completion handler.
+     *
+     * **Note:** Searches that can be answered from an index's search cache are not delayed.
+     *
+     * @param delay Maximum time (in milliseconds) a search is held before being sent.
+     * @param maxBatchSize Maximum number of searches sent together. A batch is sent as soon as it reaches this size.
+     */
+    public void enableSearchBatching(long delay, int maxBatchSize) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        SearchBatcher oldBatcher = searchBatcher;
+        searchBatcher = new SearchBatcher(this, delay, maxBatchSize);
+        if (oldBatcher != null) {
+            oldBatcher.flush();
+        }
+    }
+
+    /**
+     * Disable search batching.
+     * Pending searches are sent immediately.
+     */
+    public void disableSearchBatching() {
+        SearchBatcher oldBatcher = searchBatcher;
+        searchBatcher = null;
+        if (oldBatcher != null) {
+            oldBatcher.flush();
+        }
+    }
+
+    /**
+     * Test whether search batching is enabled.
+     *
+     * @return true if search batching is enabled, false otherwise.
+     */
+    public boolean isSearchBatchingEnabled() {
+        return searchBatcher != null;
+    }
+
     // ----------------------------------------------------------------------
     // Index management
     // ----------------------------------------------------------------------
@@ -359,18 +426,24 @@ public class Client extends AbstractClient {
     protected JSONObject multipleQueries(List<IndexQuery> queries, String strategy) throws AlgoliaException {
         try {
             JSONArray requests = new JSONArray();
+            // The shortest request timeout of all queries applies.
+            int requestTimeout = 0;
             for (IndexQuery indexQuery : queries) {
                 requests.put(new JSONObject()
                         .put("indexName", indexQuery.getIndexName())
                         .put("params", indexQuery.getQuery().build())
                 );
+                Integer queryTimeout = indexQuery.getQuery().getRequestTimeout();
+                if (queryTimeout != null && (requestTimeout == 0 || queryTimeout < requestTimeout)) {
+                    requestTimeout = queryTimeout;
+                }
             }
             JSONObject body = new JSONObject().put("requests", requests);
             String path = "/1/indexes/*/queries";
             if (strategy != null) {
                 body.put("strategy", strategy);
             }
-            return postRequest(path, body.toString(), true);
+            return postRequest(path, body.toString(), true, requestTimeout);
         } catch (JSONException e) {
             throw new AlgoliaException(e.getMessage());
         }
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// ----------------------------------------------------------------------
+// IMPLEMENTATION NOTES
+// ----------------------------------------------------------------------
+// Filters are immutable trees. Every node compiles lazily into its string
+// representations and caches them, so that a sub-expression shared by several
+// filters (e.g. the refinements of a disjunctive faceting search) is only
+// formatted once. In the `facetFilters` syntax, each item of the top-level
+// array is cached as a JSON fragment, so that compiling a conjunction of
+// already compiled items boils down to joining strings.
+//
+// Only strings are cached: since they are immutable, they can be published
+// through plain fields (the worst case being that two threads compute the
+// same string).
+//
+// The shapes that the API cannot parse are rejected at construction time:
+// nested compounds of the same kind are flattened, and single-item compounds
+// are replaced by their item, so that every remaining shape is valid.
+// ----------------------------------------------------------------------
+
+/**
+ * A typed search filter.
+ *
+ * Filters are built from leaves (facet, tag and numeric filters) combined with boolean operators. They compile into
+ * the syntax of the `filters` search parameter (see {@link #build()} and {@link Query#setFilter(Filter)}). Filters
+ * consisting only of conjunctions of facet filters and disjunctions thereof may also be compiled into the (deprecated)
+ * `facetFilters` syntax (see {@link #buildFacetFilters()}).
+ *
+ * The `filters` syntax does not support arbitrary boolean expressions. Therefore:
+ *
+ * - compounds cannot be empty;
+ * - only leaves can be negated;
+ * - a disjunction cannot contain a conjunction.
+ *
+ * Filters violating these rules are rejected at construction with an {@link IllegalArgumentException}.
+ *
+ * **Note:** Filters are immutable, hence thread-safe.
+ */
+public abstract class Filter {
+
+    /** Cached result of {@link #build()}. */
+    private String filters;
+
+    /** Cached result of {@link #buildFacetFilters()}. */
+    private String facetFilters;
+
+    /** Cached result of {@link #buildFacetFiltersItem()}. */
+    private String facetFiltersItem;
+
+    Filter() {
+    }
+
+    // ----------------------------------------------------------------------
+    // Construction
+    // ----------------------------------------------------------------------
+
+    /**
+     * Filter on a facet value.
+     *
+     * @param attribute Name of the facet attribute.
+     * @param value Value of the facet.
+     * @return A new filter.
+     */
+    public static @NonNull Filter facet(@NonNull String attribute, @NonNull String value) {
+        return new FacetFilter(attribute, value);
+    }
+
+    /**
+     * Filter on a tag.
+     *
+     * @param value The tag.
+     * @return A new filter.
+     */
+    public static @NonNull Filter tag(@NonNull String value) {
+        return new FacetFilter("_tags", value);
+    }
+
+    /**
+     * Filter on a numeric comparison.
+     *
+     * @param attribute Name of the numeric attribute.
+     * @param operator Comparison operator: one of `<`, `<=`, `=`, `!=`, `>=`, `>`.
+     * @param value The value to compare to.
+     * @return A new filter.
+     */
+    public static @NonNull Filter numeric(@NonNull String attribute, @NonNull String operator, @NonNull Number value) {
+        if (!Arrays.asList("<", "<=", "=", "!=", ">=", ">").contains(operator)) {
+            throw new IllegalArgumentException("Invalid numeric operator: " + operator);
+        }
+        return new NumericFilter(attribute, operator, value, null);
+    }
+
+    /**
+     * Filter on a numeric range.
+     *
+     * @param attribute Name of the numeric attribute.
+     * @param lowerBound Lower bound (inclusive).
+     * @param upperBound Upper bound (inclusive).
+     * @return A new filter.
+     */
+    public static @NonNull Filter range(@NonNull String attribute, @NonNull Number lowerBound, @NonNull Number upperBound) {
+        return new NumericFilter(attribute, null, lowerBound, upperBound);
+    }
+
+    /**
+     * Conjunction of filters.
+     *
+     * @param filters The filters to combine. Must not be empty.
+     * @return A new filter.
+     * @throws IllegalArgumentException if there are no filters.
+     */
+    public static @NonNull Filter and(@NonNull Filter... filters) {
+        return and(Arrays.asList(filters));
+    }
+
+    /**
+     * Conjunction of filters.
+     *
+     * @param filters The filters to combine. Must not be empty.
+     * @return A new filter.
+     * @throws IllegalArgumentException if there are no filters.
+     */
+    public static @NonNull Filter and(@NonNull List<Filter> filters) {
+        return compound(true, filters);
+    }
+
+    /**
+     * Disjunction of filters.
+     *
+     * @param filters The filters to combine. Must not be empty, nor contain any conjunction.
+     * @return A new filter.
+     * @throws IllegalArgumentException if there are no filters, or if one of them is a conjunction.
+     */
+    public static @NonNull Filter or(@NonNull Filter... filters) {
+        return or(Arrays.asList(filters));
+    }
+
+    /**
+     * Disjunction of filters.
+     *
+     * @param filters The filters to combine. Must not be empty, nor contain any conjunction.
+     * @return A new filter.
+     * @throws IllegalArgumentException if there are no filters, or if one of them is a conjunction.
+     */
+    public static @NonNull Filter or(@NonNull List<Filter> filters) {
+        return compound(false, filters);
+    }
+
+    /**
+     * Negation of a filter.
+     *
+     * @param filter The filter to negate. Must be a facet, tag or numeric filter.
+     * @return A new filter.
+     * @throws IllegalArgumentException if the filter is not a facet, tag or numeric filter.
+     */
+    public static @NonNull Filter not(@NonNull Filter filter) {
+        if (!(filter instanceof FacetFilter || filter instanceof NumericFilter)) {
+            throw new IllegalArgumentException("Only facet, tag or numeric filters can be negated: " + filter.build());
+        }
+        return new NotFilter(filter);
+    }
+
+    private static @NonNull Filter compound(boolean conjunction, @NonNull List<Filter> filters) {
+        if (filters.isEmpty()) {
+            throw new IllegalArgumentException("A compound filter cannot be empty");
+        }
+        List<Filter> items = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            if (filter instanceof CompoundFilter) {
+                CompoundFilter compound = (CompoundFilter)filter;
+                if (compound.conjunction == conjunction) {
+                    // Flatten nested compounds of the same kind.
+                    items.addAll(compound.filters);
+                    continue;
+                }
+                if (!conjunction) {
+                    throw new IllegalArgumentException("A conjunction cannot be nested inside a disjunction: " + filter.build());
+                }
+            }
+            items.add(filter);
+        }
+        // A single filter is used as is.
+        return items.size() == 1 ? items.get(0) : new CompoundFilter(conjunction, items);
+    }
+
+    // ----------------------------------------------------------------------
+    // Serialization
+    // ----------------------------------------------------------------------
+
+    /**
+     * Compile this filter into the syntax of the `filters` search parameter.
+     * The result is computed once and cached.
+     *
+     * @return The filter string.
+     */
+    public final @NonNull String build() {
+        String result = filters;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            appendTo(builder);
+            result = filters = builder.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Compile this filter into the syntax of the (deprecated) `facetFilters` search parameter, i.e. a JSON array
+     * whose items are ANDed, each item being either a facet filter or an array of ORed facet filters.
+     * The result is computed once and cached.
+     *
+     * @return The JSON representation of the facet filters.
+     * @throws IllegalStateException if this filter cannot be expressed as facet filters.
+     */
+    public final @NonNull String buildFacetFilters() {
+        String result = facetFilters;
+        if (result == null) {
+            result = facetFilters = toFacetFilters();
+        }
+        return result;
+    }
+
+    @Override
+    public @NonNull String toString() {
+        return build();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+        return other instanceof Filter && build().equals(((Filter)other).build());
+    }
+
+    @Override
+    public int hashCode() {
+        return build().hashCode();
+    }
+
+    /**
+     * Append the `filters` representation of this filter to a builder.
+     * Compound filters are wrapped into parentheses.
+     */
+    abstract void appendTo(@NonNull StringBuilder builder);
+
+    /** Whether this filter needs to be wrapped into parentheses when nested inside another one. */
+    boolean isCompound() {
+        return false;
+    }
+
+    /** Get the `facetFilters` representation of this filter, as a JSON top-level array of ANDed items. */
+    @NonNull String toFacetFilters() {
+        return "[" + buildFacetFiltersItem() + "]";
+    }
+
+    /**
+     * Get the `facetFilters` representation of this filter as an item of the top-level array, i.e. a JSON fragment.
+     * The result is computed once and cached.
+     *
+     * @return Either a JSON string for a single facet filter, or a JSON array of ORed facet filters.
+     * @throws IllegalStateException if this filter cannot be expressed as a facet filters item.
+     */
+    final @NonNull String buildFacetFiltersItem() {
+        String result = facetFiltersItem;
+        if (result == null) {
+            result = facetFiltersItem = toFacetFiltersItem();
+        }
+        return result;
+    }
+
+    /** Compute the result of {@link #buildFacetFiltersItem()}. */
+    @NonNull String toFacetFiltersItem() {
+        throw new IllegalStateException("Filter cannot be expressed as facet filters: " + build());
+    }
+
+    /** Join compiled facet filters items into a JSON array. */
+    static @NonNull String joinFacetFiltersItems(@NonNull List<Filter> filters) {
+        StringBuilder builder = new StringBuilder();
+        builder.append('[');
+        for (int i = 0; i < filters.size(); ++i) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(filters.get(i).buildFacetFiltersItem());
+        }
+        builder.append(']');
+        return builder.toString();
+    }
+
+    /** Append a possibly nested filter, wrapping it into parentheses if needed. */
+    static void appendNested(@NonNull StringBuilder builder, @NonNull Filter filter) {
+        if (filter.isCompound()) {
+            builder.append('(');
+            builder.append(filter.build());
+            builder.append(')');
+        } else {
+            builder.append(filter.build());
+        }
+    }
+
+    /** Append an attribute name, quoting it if it contains special characters. */
+    static void appendAttribute(@NonNull StringBuilder builder, @NonNull String attribute) {
+        boolean simple = !attribute.isEmpty();
+        for (int i = 0; i < attribute.length() && simple; ++i) {
+            char c = attribute.charAt(i);
+            simple = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-';
+        }
+        if (simple) {
+            builder.append(attribute);
+        } else {
+            appendQuoted(builder, attribute);
+        }
+    }
+
+    /** Append a quoted string, escaping quotes and backslashes. */
+    static void appendQuoted(@NonNull StringBuilder builder, @NonNull String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementations
+    // ----------------------------------------------------------------------
+
+    private static class FacetFilter extends Filter {
+        private final @NonNull String attribute;
+        private final @NonNull String value;
+
+        FacetFilter(@NonNull String attribute, @NonNull String value) {
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        @Override
+        void appendTo(@NonNull StringBuilder builder) {
+            appendAttribute(builder, attribute);
+            builder.append(':');
+            appendQuoted(builder, value);
+        }
+
+        @Override
+        @NonNull String toFacetFiltersItem() {
+            return JSONObject.quote(attribute + ":" + value);
+        }
+    }
+
+    private static class NumericFilter extends Filter {
+        private final @NonNull String attribute;
+        private final @Nullable String operator;
+        private final @NonNull Number value;
+        private final @Nullable Number upperBound;
+
+        /** A comparison if `operator` is not null, a range otherwise. */
+        NumericFilter(@NonNull String attribute, @Nullable String operator, @NonNull Number value, @Nullable Number upperBound) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.value = value;
+            this.upperBound = upperBound;
+        }
+
+        @Override
+        void appendTo(@NonNull StringBuilder builder) {
+            appendAttribute(builder, attribute);
+            if (operator != null) {
+                builder.append(' ').append(operator).append(' ').append(value);
+            } else {
+                builder.append(':').append(value).append(" TO ").append(upperBound);
+            }
+        }
+    }
+
+    private static class CompoundFilter extends Filter {
+        private final boolean conjunction;
+
+        /** The combined filters. There are at least two of them, none of them being a compound of the same kind. */
+        private final @NonNull List<Filter> filters;
+
+        CompoundFilter(boolean conjunction, @NonNull List<Filter> filters) {
+            this.conjunction = conjunction;
+            this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        }
+
+        @Override
+        boolean isCompound() {
+            return true;
+        }
+
+        @Override
+        void appendTo(@NonNull StringBuilder builder) {
+            String separator = conjunction ? " AND " : " OR ";
+            for (int i = 0; i < filters.size(); ++i) {
+                if (i > 0) {
+                    builder.append(separator);
+                }
+                appendNested(builder, filters.get(i));
+            }
+        }
+
+        @Override
+        @NonNull String toFacetFilters() {
+            if (!conjunction) {
+                return super.toFacetFilters();
+            }
+            // A conjunction maps directly to the top-level array.
+            return joinFacetFiltersItems(filters);
+        }
+
+        @Override
+        @NonNull String toFacetFiltersItem() {
+            // Only disjunctions of single facet filters can be items.
+            for (Filter filter : filters) {
+                if (conjunction || !(filter instanceof FacetFilter)) {
+                    return super.toFacetFiltersItem();
+                }
+            }
+            return joinFacetFiltersItems(filters);
+        }
+    }
+
+    private static class NotFilter extends Filter {
+        private final @NonNull Filter filter;
+
+        NotFilter(@NonNull Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        void appendTo(@NonNull StringBuilder builder) {
+            builder.append("NOT ");
+            appendNested(builder, filter);
+        }
+    }
+}
@@ -114,6 +114,11 @@ public class Index {
      */
     public Request searchAsync(@Nullable Query query, @Nullable CompletionHandler completionHandler) {
         final Query queryCopy = query != null ? new Query(query) : new Query();
+        // Batch the search if enabled... unless it can be answered from the cache.
+        final SearchBatcher batcher = getClient().searchBatcher;
+        if (batcher != null && !(isCacheEnabled && searchCache.get(queryCopy.build()) != null)) {
+            return batcher.search(this, queryCopy, completionHandler);
+        }
         return getClient().new AsyncTaskRequest(completionHandler) {
             @NonNull
             @Override protected JSONObject run() throws AlgoliaException {
@@ -122,6 +127,16 @@ public class Index {
         }.start();
     }
 
+    /**
+     * Create a search-as-you-type session on this index.
+     *
+     * @param completionHandler The listener that will be notified of the results of the session's searches.
+     * @return A new session, debouncing and cancelling searches with the default settings.
+     */
+    public @NonNull SearchSession newSearchSession(@NonNull CompletionHandler completionHandler) {
+        return new SearchSession(this, completionHandler);
+    }
+
     /**
      * Search inside this index (synchronously).
      *
@@ -166,6 +181,9 @@ public class Index {
     /**
      * Perform a search with disjunctive facets, generating as many queries as number of disjunctive facets (helper).
      *
+     * If the completion handler is a {@link ProgressiveCompletionHandler}, the queries are sent as individual search
+     * requests, and results are delivered progressively (hits first, then disjunctive facet counts as they arrive).
+     *
      * @param query             The query.
      * @param disjunctiveFacets List of disjunctive facets.
      * @param refinements       The current refinements, mapping facet names to a list of values.
@@ -178,6 +196,11 @@ public class Index {
             protected Request multipleQueriesAsync(@NonNull List<Query> queries, @NonNull CompletionHandler completionHandler) {
                 return Index.this.multipleQueriesAsync(queries, null, completionHandler);
             }
+
+            @Override
+            protected Request searchAsync(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
+                return Index.this.searchAsync(query, completionHandler);
+            }
         }.searchDisjunctiveFacetingAsync(query, disjunctiveFacets, refinements, completionHandler);
     }
 
@@ -227,24 +250,15 @@ public class Index {
      * @param handler   A Completion handler that will be notified of the request's outcome.
      * @return A cancellable request.
      */
-    public Request searchForFacetValues(@NonNull String facetName, @NonNull String facetText, @Nullable Query query, @NonNull final CompletionHandler handler) {
-        try {
-            final String path = "/1/indexes/" + getEncodedIndexName() + "/facets/" + URLEncoder.encode(facetName, "UTF-8") + "/query";
-            final Query params = (query != null ? new Query(query) : new Query());
-            params.set("facetQuery", facetText);
-            final JSONObject requestBody = new JSONObject().put("params", params.build());
-
-            final Client client = getClient();
-            return client.new AsyncTaskRequest(handler) {
-                @NonNull
-                @Override
-                protected JSONObject run() throws AlgoliaException {
-                    return client.postRequest(path, requestBody.toString(), true);
-                }
-            }.start();
-        } catch (UnsupportedEncodingException | JSONException e) {
-            throw new RuntimeException(e); // should never happen
-        }
+    public Request searchForFacetValues(@NonNull final String facetName, @NonNull final String facetText, @Nullable Query query, @NonNull final CompletionHandler handler) {
+        final Query queryCopy = query != null ? new Query(query) : null;
+        return getClient().new AsyncTaskRequest(handler) {
+            @NonNull
+            @Override
+            protected JSONObject run() throws AlgoliaException {
+                return searchForFacetValuesSync(facetName, facetText, queryCopy);
+            }
+        }.start();
     }
 
     /**
@@ -483,7 +497,7 @@ public class Index {
      * @deprecated Task IDs are always integers. Please use {@link #waitTaskAsync(int, CompletionHandler)} instead.
      */
     public Request waitTaskAsync(final @NonNull String taskID, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, Client.RequestPriority.BACKGROUND) {
             @NonNull
             @Override protected JSONObject run() throws AlgoliaException {
                 return waitTask(taskID);
@@ -500,7 +514,7 @@ public class Index {
      * @return A cancellable request.
      */
     public Request waitTaskAsync(final int taskID, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, Client.RequestPriority.BACKGROUND) {
             @NonNull
             @Override protected JSONObject run() throws AlgoliaException {
                 return waitTask(Integer.toString(taskID));
@@ -604,7 +618,7 @@ public class Index {
      */
     public Request browseAsync(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
         final Query queryCopy = new Query(query);
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, Client.RequestPriority.BACKGROUND) {
             @NonNull
             @Override protected JSONObject run() throws AlgoliaException {
                 return browse(queryCopy);
@@ -622,7 +636,7 @@ public class Index {
      * @return A cancellable request.
      */
     public Request browseFromAsync(final @NonNull String cursor, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, Client.RequestPriority.BACKGROUND) {
             @NonNull
             @Override protected JSONObject run() throws AlgoliaException {
                 return browseFrom(cursor);
@@ -1020,6 +1034,23 @@ public class Index {
         }
     }
 
+    /**
+     * Store search results in the search cache, if enabled.
+     * Used when the results have been obtained by other means than {@link #search(Query)}, e.g. a batched search.
+     *
+     * @param query The search query.
+     * @param content The search results.
+     */
+    void cacheSearchResults(@NonNull Query query, @NonNull JSONObject content) {
+        if (isCacheEnabled) {
+            try {
+                searchCache.put(query.build(), content.toString().getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e); // should never happen
+            }
+        }
+    }
+
     /**
      * Search inside the index
      *
@@ -1033,12 +1064,13 @@ public class Index {
 
         try {
             String paramsString = query.build();
+            final int requestTimeout = query.getRequestTimeout() != null ? query.getRequestTimeout() : 0;
             if (paramsString.length() > 0) {
                 JSONObject body = new JSONObject();
                 body.put("params", paramsString);
-                return client.postRequestRaw("/1/indexes/" + encodedIndexName + "/query", body.toString(), true);
+                return client.postRequestRaw("/1/indexes/" + encodedIndexName + "/query", body.toString(), true, requestTimeout);
             } else {
-                return client.getRequestRaw("/1/indexes/" + encodedIndexName, true);
+                return client.getRequestRaw("/1/indexes/" + encodedIndexName, true, requestTimeout);
             }
         } catch (JSONException e) {
             throw new RuntimeException(e); // should never happen
@@ -1148,6 +1180,27 @@ public class Index {
         }
     }
 
+    /**
+     * Search for some text in a facet values.
+     *
+     * @param facetName The name of the facet to search.
+     * @param facetText The text to search for in the facet's values.
+     * @param query     An optional query to take extra search parameters into account.
+     * @return The JSON results returned by the server.
+     * @throws AlgoliaException
+     */
+    protected JSONObject searchForFacetValuesSync(@NonNull String facetName, @NonNull String facetText, @Nullable Query query) throws AlgoliaException {
+        try {
+            final String path = "/1/indexes/" + getEncodedIndexName() + "/facets/" + URLEncoder.encode(facetName, "UTF-8") + "/query";
+            final Query params = (query != null ? new Query(query) : new Query());
+            params.set("facetQuery", facetText);
+            final JSONObject requestBody = new JSONObject().put("params", params.build());
+            return client.postRequest(path, requestBody.toString(), true, params.getRequestTimeout() != null ? params.getRequestTimeout() : 0);
+        } catch (UnsupportedEncodingException | JSONException e) {
+            throw new RuntimeException(e); // should never happen
+        }
+    }
+
     /**
      * Run multiple queries on this index with one API call.
      * A variant of {@link Client#multipleQueries(List, String)} where all queries target this index.
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of request latencies.
+ *
+ * Latencies are counted in fixed buckets of increasing width, so that recording is cheap and memory consumption is
+ * bounded. Percentiles are therefore approximate: they are reported as the upper bound of the bucket they fall into
+ * (capped by the maximum recorded latency).
+ *
+ * This class is thread-safe.
+ */
+public class LatencyHistogram {
+    /** Upper bounds (inclusive, in milliseconds) of the buckets. The last bucket is unbounded. */
+    private static final long[] BUCKET_BOUNDS = { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    private final long[] counts = new long[BUCKET_BOUNDS.length + 1];
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    /**
+     * Record a latency.
+     *
+     * @param latency The latency, in milliseconds. Negative values are treated as zero.
+     */
+    public synchronized void record(long latency) {
+        latency = Math.max(0, latency);
+        int index = Arrays.binarySearch(BUCKET_BOUNDS, latency);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts[index] += 1;
+        min = count == 0 ? latency : Math.min(min, latency);
+        max = Math.max(max, latency);
+        count += 1;
+        sum += latency;
+    }
+
+    /** Forget all recorded latencies. */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = sum = min = max = 0;
+    }
+
+    /** Number of recorded latencies. */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /** Minimum recorded latency (ms), or 0 if nothing was recorded. */
+    public synchronized long getMin() {
+        return min;
+    }
+
+    /** Maximum recorded latency (ms), or 0 if nothing was recorded. */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /** Mean recorded latency (ms), or 0 if nothing was recorded. */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double)sum / count;
+    }
+
+    /**
+     * Estimate a percentile of the recorded latencies.
+     *
+     * @param percentile The percentile, between 0 and 100 (e.g. 50 for the median).
+     * @return The approximate latency (ms) under which the given percentage of requests fall, or 0 if nothing was
+     *         recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_BOUNDS.length; ++i) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return Math.min(BUCKET_BOUNDS[i], max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Get the upper bounds of the buckets.
+     *
+     * @return The (inclusive) upper bounds in milliseconds. The last bucket, which is unbounded, is not listed.
+     */
+    public static @NonNull long[] getBucketBounds() {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * Get the number of latencies in each bucket.
+     *
+     * @return The counts, one per bucket, i.e. one more than the number of {@link #getBucketBounds() bounds}.
+     */
+    public synchronized @NonNull long[] getBucketCounts() {
+        return counts.clone();
+    }
+
+    @Override
+    public synchronized @NonNull String toString() {
+        return String.format("LatencyHistogram{count=%d, min=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d}", count, min, getMean(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+    }
+}
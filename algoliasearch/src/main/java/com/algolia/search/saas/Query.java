@@ -108,6 +108,36 @@ public class Query extends AbstractQuery {
      */
     public Query(@NonNull Query other) {
         super(other);
+        requestTimeout = other.requestTimeout;
+    }
+
+    // ----------------------------------------------------------------------
+    // Client-side options
+    // ----------------------------------------------------------------------
+    // NOTE: These are not search parameters: they are neither sent to the server, nor taken into account by `build()`,
+    // `equals()` or `hashCode()`.
+
+    /** Overall timeout (ms) of requests using this query; null for none. */
+    private Integer requestTimeout;
+
+    /**
+     * Set the overall timeout of requests using this query.
+     * It bounds the total duration of a request, including retries on other hosts: retries are not attempted once
+     * the timeout has expired, and the connect and read timeouts of every attempt are capped by the remaining time.
+     *
+     * @param requestTimeout The timeout (ms), or null for no overall timeout.
+     * @return This instance (used to chain calls).
+     */
+    public @NonNull Query setRequestTimeout(@Nullable Integer requestTimeout) {
+        if (requestTimeout != null && requestTimeout <= 0) {
+            throw new IllegalArgumentException("Request timeout must be strictly positive");
+        }
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public @Nullable Integer getRequestTimeout() {
+        return requestTimeout;
     }
 
     // ----------------------------------------------------------------------
@@ -417,6 +447,17 @@ public class Query extends AbstractQuery {
         return set(KEY_FILTERS, filters);
     }
 
+    /**
+     * Filter the query with a typed filter.
+     * The filter is compiled into the syntax accepted by {@link #setFilters(String)}.
+     *
+     * @param filter The filter, or null to remove filters.
+     * @return This instance (used to chain calls).
+     */
+    public @NonNull Query setFilter(@Nullable Filter filter) {
+        return set(KEY_FILTERS, filter == null ? null : filter.build());
+    }
+
     /**
      * Get the numeric, facet or/and tag filters for this Query.
      *
@@ -1414,4 +1455,16 @@ public class Query extends AbstractQuery {
     public @NonNull Query set(@NonNull String name, @Nullable Object value) {
         return (Query) super.set(name, value);
     }
+
+    /**
+     * Derive a new query from this one, with one parameter changed.
+     * This query is left untouched. Parameters are shared between both queries, so that deriving a query is cheap.
+     *
+     * @param name  The parameter's name.
+     * @param value The parameter's value, or null to remove it.
+     * @return A new query.
+     */
+    public @NonNull Query with(@NonNull String name, @Nullable Object value) {
+        return new Query(this).set(name, value);
+    }
 }
\ No newline at end of file
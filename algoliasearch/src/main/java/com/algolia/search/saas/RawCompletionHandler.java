@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+/**
+ * Handles completion of an API request whose results are delivered raw, i.e. without being parsed.
+ * This spares the cost of building a JSON tree when the caller does not need one (e.g. to cache or forward the
+ * results, or to parse them with another library).
+ */
+public interface RawCompletionHandler {
+
+    /**
+     * Called when the request has completed, either successfully or failing.
+     * <p>
+     * NOTE: One and only one of either <code>content</code> or <code>error</code> is guaranteed to be not null.
+     * </p>
+     * <p>
+     * WARNING: The content may be shared with a cache: it must not be modified.
+     * </p>
+     *
+     * @param content Content that was returned by the API, as UTF-8 encoded JSON (in case of success).
+     * @param error Error that was encountered (in case of failure).
+     */
+    public void requestCompleted(byte[] content, AlgoliaException error);
+}
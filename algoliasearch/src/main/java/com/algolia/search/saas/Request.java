@@ -35,9 +35,9 @@ public interface Request
      * Cancel this request.
      * The listener will not be called after a request has been cancelled.
      * <p>
-     * WARNING: Cancelling a request may or may not cancel the underlying network call, depending how late the
-     * cancellation happens. In other words, a cancelled request may have already been executed by the server. In any
-     * case, cancelling never carries "undo" semantics.
+     * Implementations should abort the underlying network call if it is in progress. However, depending how late the
+     * cancellation happens, a cancelled request may have already been executed by the server. In any case, cancelling
+     * never carries "undo" semantics.
      * </p>
      */
     public void cancel();
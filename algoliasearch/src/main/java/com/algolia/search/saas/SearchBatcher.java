@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups search requests issued within a short time window into a single multiple queries API call.
+ *
+ * Requests are held until either a maximum delay has elapsed since the first one was queued, or a maximum number of
+ * requests are queued. They are then sent together (see {@link Client#multipleQueries(List, String)}), and the
+ * individual results are dispatched back to each request's completion handler.
+ *
+ * **Note:** A batch containing a single request is sent as a regular search.
+ */
+class SearchBatcher {
+    /** A search request waiting to be (or being) sent as part of a batch. */
+    private static class BatchedSearchRequest implements Request {
+        final @NonNull Index index;
+        final @NonNull Query query;
+        final @Nullable CompletionHandler completionHandler;
+        private volatile boolean cancelled = false;
+        private volatile boolean finished = false;
+
+        BatchedSearchRequest(@NonNull Index index, @NonNull Query query, @Nullable CompletionHandler completionHandler) {
+            this.index = index;
+            this.query = query;
+            this.completionHandler = completionHandler;
+        }
+
+        @Override
+        public void cancel() {
+            // NOTE: The batch is still sent if other requests need it; only the dispatch of this result is suppressed.
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished || cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void complete(@Nullable JSONObject content, @Nullable AlgoliaException error) {
+            finished = true;
+            if (!cancelled && completionHandler != null) {
+                completionHandler.requestCompleted(content, error);
+            }
+        }
+    }
+
+    private final @NonNull Client client;
+
+    /** Maximum time (in milliseconds) a request is held before being sent. */
+    private final long maxDelay;
+
+    /** Maximum number of requests per batch. */
+    private final int maxBatchSize;
+
+    /** Requests waiting to be sent. Guarded by `this`. */
+    private List<BatchedSearchRequest> pendingRequests = new ArrayList<>();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Create a new batcher.
+     *
+     * @param client The client used to send the requests.
+     * @param maxDelay Maximum time (in milliseconds) a request is held before being sent.
+     * @param maxBatchSize Maximum number of requests per batch.
+     */
+    SearchBatcher(@NonNull Client client, long maxDelay, int maxBatchSize) {
+        this.client = client;
+        this.maxDelay = maxDelay;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Queue a search request.
+     *
+     * @param index The index to search.
+     * @param query The search query. It must not be modified afterwards.
+     * @param completionHandler The listener that will be notified of the request's outcome.
+     * @return A cancellable request.
+     */
+    @NonNull Request search(@NonNull Index index, @NonNull Query query, @Nullable CompletionHandler completionHandler) {
+        BatchedSearchRequest request = new BatchedSearchRequest(index, query, completionHandler);
+        final int pendingCount;
+        synchronized (this) {
+            pendingRequests.add(request);
+            pendingCount = pendingRequests.size();
+        }
+        if (pendingCount >= maxBatchSize) {
+            client.mainHandler.removeCallbacks(flushRunnable);
+            flush();
+        } else if (pendingCount == 1) {
+            client.mainHandler.postDelayed(flushRunnable, maxDelay);
+        }
+        return request;
+    }
+
+    /**
+     * Send all pending requests immediately.
+     */
+    void flush() {
+        final List<BatchedSearchRequest> batch = new ArrayList<>();
+        synchronized (this) {
+            // Requests cancelled before being sent are simply dropped.
+            for (BatchedSearchRequest request : pendingRequests) {
+                if (!request.isCancelled()) {
+                    batch.add(request);
+                }
+            }
+            pendingRequests = new ArrayList<>();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        client.new AsyncTaskRequest(new CompletionHandler() {
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                dispatch(batch, content, error);
+            }
+        }) {
+            @NonNull
+            @Override
+            protected JSONObject run() throws AlgoliaException {
+                return send(batch);
+            }
+        }.start();
+    }
+
+    /**
+     * Send a batch of requests synchronously.
+     *
+     * @param batch The requests to send.
+     * @return The results of the single search if the batch contains only one request, the multiple queries results
+     *         otherwise.
+     */
+    private @NonNull JSONObject send(@NonNull List<BatchedSearchRequest> batch) throws AlgoliaException {
+        if (batch.size() == 1) {
+            BatchedSearchRequest request = batch.get(0);
+            return request.index.search(request.query);
+        }
+        List<IndexQuery> queries = new ArrayList<>(batch.size());
+        for (BatchedSearchRequest request : batch) {
+            queries.add(new IndexQuery(request.index, request.query));
+        }
+        JSONObject content = client.multipleQueries(queries, null);
+        JSONArray results = content.optJSONArray("results");
+        if (results == null || results.length() != batch.size()) {
+            throw new AlgoliaException("Invalid multiple queries response");
+        }
+        try {
+            // Make the individual results available to subsequent (unbatched) cache lookups.
+            for (int i = 0; i < batch.size(); ++i) {
+                BatchedSearchRequest request = batch.get(i);
+                request.index.cacheSearchResults(request.query, results.getJSONObject(i));
+            }
+        } catch (JSONException e) {
+            throw new AlgoliaException("Invalid multiple queries response", e);
+        }
+        return content;
+    }
+
+    /**
+     * Dispatch the outcome of a batch to the individual requests.
+     */
+    private void dispatch(@NonNull List<BatchedSearchRequest> batch, @Nullable JSONObject content, @Nullable AlgoliaException error) {
+        if (batch.size() == 1) {
+            batch.get(0).complete(content, error);
+            return;
+        }
+        JSONArray results = content != null ? content.optJSONArray("results") : null;
+        for (int i = 0; i < batch.size(); ++i) {
+            batch.get(i).complete(results != null ? results.optJSONObject(i) : null, error);
+        }
+    }
+}
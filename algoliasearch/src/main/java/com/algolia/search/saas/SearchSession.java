@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.json.JSONObject;
+
+/**
+ * A search-as-you-type session on an index.
+ *
+ * Searches are meant to be submitted on every keystroke via {@link #search(Query)}. The session:
+ *
+ * - **debounces** them: a search is only sent once no newer search has been submitted for the
+ *   {@link #setDebounceDelay(long) debounce delay};
+ * - **cancels** the previous in-flight request when a new one is sent (unless disabled by
+ *   {@link #setCancelPreviousRequests(boolean)}), which releases its network resources;
+ * - **orders** results: the completion handler is never called with results older than the last delivered ones;
+ * - records the latency of every delivered result into a {@link LatencyHistogram}.
+ *
+ * **Warning:** This class is not thread-safe; it must be used from the main thread. The completion handler is called
+ * on the main thread as well.
+ */
+public class SearchSession {
+    /** Default debounce delay (ms). */
+    public static final long DEFAULT_DEBOUNCE_DELAY = 100;
+
+    private final @NonNull Index index;
+    private final @NonNull CompletionHandler completionHandler;
+
+    private long debounceDelay = DEFAULT_DEBOUNCE_DELAY;
+    private boolean cancelPreviousRequests = true;
+
+    /** Search waiting for the debounce delay to expire; null if none. */
+    private Query pendingQuery;
+
+    /** Sends the pending search. */
+    private final Runnable sendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sendPendingQuery();
+        }
+    };
+
+    /** Last sent request; null if none. */
+    private Request currentRequest;
+
+    /** Sequence number of the last sent search. */
+    private int lastSentSeqNo = 0;
+
+    /** Sequence number of the last delivered search. */
+    private int lastDeliveredSeqNo = 0;
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    // Statistics
+    // ----------
+
+    private int sentCount;
+    private int cancelledCount;
+    private int droppedCount;
+
+    // ----------------------------------------------------------------------
+    // Initialization
+    // ----------------------------------------------------------------------
+
+    /**
+     * Create a new session.
+     *
+     * @param index The index to search.
+     * @param completionHandler Handler notified of the results of the searches (except obsolete ones).
+     */
+    public SearchSession(@NonNull Index index, @NonNull CompletionHandler completionHandler) {
+        this.index = index;
+        this.completionHandler = completionHandler;
+    }
+
+    // ----------------------------------------------------------------------
+    // Accessors
+    // ----------------------------------------------------------------------
+
+    public @NonNull Index getIndex() {
+        return index;
+    }
+
+    public long getDebounceDelay() {
+        return debounceDelay;
+    }
+
+    /**
+     * Set the debounce delay.
+     *
+     * @param debounceDelay Time (ms) a search must stay the latest one before being sent. 0 disables debouncing.
+     */
+    public void setDebounceDelay(long debounceDelay) {
+        if (debounceDelay < 0) {
+            throw new IllegalArgumentException("Debounce delay cannot be negative");
+        }
+        this.debounceDelay = debounceDelay;
+    }
+
+    public boolean isCancelPreviousRequests() {
+        return cancelPreviousRequests;
+    }
+
+    /**
+     * Set whether sending a search cancels the previous in-flight request.
+     * When disabled, previous requests run to completion, but their results are still discarded if newer results
+     * have already been delivered.
+     *
+     * @param cancelPreviousRequests true to cancel previous requests, false otherwise.
+     */
+    public void setCancelPreviousRequests(boolean cancelPreviousRequests) {
+        this.cancelPreviousRequests = cancelPreviousRequests;
+    }
+
+    /**
+     * Get the latencies of the delivered searches, measured from the time they were sent (i.e. after debouncing).
+     *
+     * @return The session's latency histogram.
+     */
+    public @NonNull LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /** Number of searches actually sent. */
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    /** Number of in-flight searches cancelled because a newer search was sent. */
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /** Number of results discarded because newer results had already been delivered. */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    // ----------------------------------------------------------------------
+    // Operations
+    // ----------------------------------------------------------------------
+
+    /**
+     * Submit a search.
+     * It supersedes any search still waiting for the debounce delay to expire.
+     *
+     * @param query The query.
+     */
+    public void search(@NonNull Query query) {
+        pendingQuery = new Query(query);
+        Client client = index.getClient();
+        client.mainHandler.removeCallbacks(sendRunnable);
+        if (debounceDelay == 0) {
+            sendPendingQuery();
+        } else {
+            client.mainHandler.postDelayed(sendRunnable, debounceDelay);
+        }
+    }
+
+    /**
+     * Cancel the pending search, if any, and the in-flight request, if any.
+     * The completion handler will not be called until a new search is submitted.
+     */
+    public void cancel() {
+        index.getClient().mainHandler.removeCallbacks(sendRunnable);
+        pendingQuery = null;
+        cancelCurrentRequest();
+        // Make sure that results of requests that could not be cancelled are discarded.
+        lastDeliveredSeqNo = lastSentSeqNo;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation
+    // ----------------------------------------------------------------------
+
+    private void sendPendingQuery() {
+        Query query = pendingQuery;
+        if (query == null) {
+            return;
+        }
+        pendingQuery = null;
+        if (cancelPreviousRequests) {
+            cancelCurrentRequest();
+        }
+        final int seqNo = ++lastSentSeqNo;
+        final long startTime = System.currentTimeMillis();
+        sentCount += 1;
+        currentRequest = index.searchAsync(query, new CompletionHandler() {
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                searchCompleted(seqNo, startTime, content, error);
+            }
+        });
+    }
+
+    private void cancelCurrentRequest() {
+        if (currentRequest != null) {
+            if (!currentRequest.isFinished()) {
+                currentRequest.cancel();
+                cancelledCount += 1;
+            }
+            currentRequest = null;
+        }
+    }
+
+    private void searchCompleted(int seqNo, long startTime, @Nullable JSONObject content, @Nullable AlgoliaException error) {
+        if (seqNo <= lastDeliveredSeqNo) {
+            droppedCount += 1;
+            return;
+        }
+        lastDeliveredSeqNo = seqNo;
+        latencyHistogram.record(System.currentTimeMillis() - startTime);
+        completionHandler.requestCompleted(content, error);
+    }
+}
@@ -25,10 +25,13 @@ package com.algolia.search.saas.helpers;
 
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.algolia.search.saas.AlgoliaException;
 import com.algolia.search.saas.CompletionHandler;
+import com.algolia.search.saas.Filter;
 import com.algolia.search.saas.Index;
+import com.algolia.search.saas.ProgressiveCompletionHandler;
 import com.algolia.search.saas.Query;
 import com.algolia.search.saas.Request;
 
@@ -37,13 +40,23 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Disjunctive faceting helper.
+ *
+ * Disjunctive faceting requires one query for the hits (and regular facets), plus one query per disjunctive facet.
+ * By default, all queries are sent in one {@link #multipleQueriesAsync multiple queries} call, and the results are
+ * delivered once all of them are available.
+ *
+ * If the completion handler is a {@link ProgressiveCompletionHandler}, queries are sent individually through
+ * {@link #searchAsync} instead, and results are delivered progressively: first the hits as soon as they are available,
+ * then updated results every time the counts of a disjunctive facet arrive.
  */
 public abstract class DisjunctiveFaceting {
 
@@ -56,6 +69,33 @@ public abstract class DisjunctiveFaceting {
      */
     abstract protected Request multipleQueriesAsync(@NonNull List<Query> queries, @NonNull CompletionHandler completionHandler);
 
+    /**
+     * Run a single query. Used in progressive mode. The contract is the same as {@see Index#searchAsync}.
+     *
+     * The default implementation runs a multiple queries call with the query as sole element. Subclasses should
+     * override it whenever individual queries can be run more efficiently (e.g. in parallel).
+     *
+     * @param query Query to run.
+     * @param completionHandler Completion handler to be notified of results.
+     * @return A cancellable request.
+     */
+    protected Request searchAsync(@NonNull Query query, @NonNull final CompletionHandler completionHandler) {
+        return multipleQueriesAsync(Collections.singletonList(query), new CompletionHandler() {
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                JSONObject result = null;
+                if (content != null) {
+                    JSONArray results = content.optJSONArray("results");
+                    result = results != null ? results.optJSONObject(0) : null;
+                    if (result == null) {
+                        error = new AlgoliaException("Invalid response from multiple queries");
+                    }
+                }
+                completionHandler.requestCompleted(result, error);
+            }
+        });
+    }
+
     /**
      * Perform a search with disjunctive facets, generating as many queries as number of disjunctive facets.
      *
@@ -67,6 +107,9 @@ public abstract class DisjunctiveFaceting {
      */
     public Request searchDisjunctiveFacetingAsync(@NonNull Query query, @NonNull final List<String> disjunctiveFacets, @NonNull final Map<String, List<String>> refinements, @NonNull final CompletionHandler completionHandler) {
         final List<Query> queries = computeDisjunctiveFacetingQueries(query, disjunctiveFacets, refinements);
+        if (completionHandler instanceof ProgressiveCompletionHandler) {
+            return new ProgressiveRequest(queries, disjunctiveFacets, refinements, (ProgressiveCompletionHandler)completionHandler).start();
+        }
         return multipleQueriesAsync(queries, new CompletionHandler() {
             @Override
             public void requestCompleted(JSONObject content, AlgoliaException error) {
@@ -113,89 +156,56 @@ public abstract class DisjunctiveFaceting {
         // Retain only refinements corresponding to the disjunctive facets.
         Map<String, List<String>> disjunctiveRefinements = computeDisjunctiveRefinements(disjunctiveFacets, refinements);
 
-        // build queries
-        // TODO: Refactor using JSON array notation: safer and clearer.
-        List<Query> queries = new ArrayList<>();
-        // hits + regular facets query
-        StringBuilder filters = new StringBuilder();
-        boolean first_global = true;
+        // Compile the refinements once for all queries: one filter per value for conjunctive facets, one disjunction
+        // of all values for disjunctive facets.
+        Map<String, List<Filter>> refinementFilters = new LinkedHashMap<>();
         for (Map.Entry<String, List<String>> elt : refinements.entrySet()) {
-            StringBuilder or = new StringBuilder();
-            or.append("(");
-            boolean first = true;
+            List<Filter> valueFilters = new ArrayList<>(elt.getValue().size());
             for (String val : elt.getValue()) {
-                if (disjunctiveRefinements.containsKey(elt.getKey())) {
-                    // disjunctive refinements are ORed
-                    if (!first) {
-                        or.append(',');
-                    }
-                    first = false;
-                    or.append(String.format("%s:%s", elt.getKey(), val));
-                } else {
-                    if (!first_global) {
-                        filters.append(',');
-                    }
-                    first_global = false;
-                    filters.append(String.format("%s:%s", elt.getKey(), val));
-                }
+                valueFilters.add(Filter.facet(elt.getKey(), val));
             }
-            // Add or
-            if (disjunctiveRefinements.containsKey(elt.getKey())) {
-                or.append(')');
-                if (!first_global) {
-                    filters.append(',');
-                }
-                first_global = false;
-                filters.append(or.toString());
+            if (!disjunctiveRefinements.containsKey(elt.getKey())) {
+                refinementFilters.put(elt.getKey(), valueFilters);
+            } else if (!valueFilters.isEmpty()) {
+                // disjunctive refinements are ORed
+                refinementFilters.put(elt.getKey(), Collections.singletonList(Filter.or(valueFilters)));
             }
         }
 
-        queries.add(new Query(query).set("facetFilters", filters.toString()));
+        // build queries
+        List<Query> queries = new ArrayList<>();
+        // hits + regular facets query
+        queries.add(new Query(query).set("facetFilters", buildFacetFilters(refinementFilters, null)));
         // one query per disjunctive facet (use all refinements but the current one + hitsPerPage=1 + single facet
         for (String disjunctiveFacet : disjunctiveFacets) {
-            filters = new StringBuilder();
-            first_global = true;
-            for (Map.Entry<String, List<String>> elt : refinements.entrySet()) {
-                if (disjunctiveFacet.equals(elt.getKey())) {
-                    continue;
-                }
-                StringBuilder or = new StringBuilder();
-                or.append("(");
-                boolean first = true;
-                for (String val : elt.getValue()) {
-                    if (disjunctiveRefinements.containsKey(elt.getKey())) {
-                        // disjunctive refinements are ORed
-                        if (!first) {
-                            or.append(',');
-                        }
-                        first = false;
-                        or.append(String.format("%s:%s", elt.getKey(), val));
-                    } else {
-                        if (!first_global) {
-                            filters.append(',');
-                        }
-                        first_global = false;
-                        filters.append(String.format("%s:%s", elt.getKey(), val));
-                    }
-                }
-                // Add or
-                if (disjunctiveRefinements.containsKey(elt.getKey())) {
-                    or.append(')');
-                    if (!first_global) {
-                        filters.append(',');
-                    }
-                    first_global = false;
-                    filters.append(or.toString());
-                }
-            }
             String[] facets = new String[]{disjunctiveFacet};
             queries.add(new Query(query).setHitsPerPage(0).setAnalytics(false)
                     .setAttributesToRetrieve().setAttributesToHighlight().setAttributesToSnippet()
-                    .setFacets(facets).set("facetFilters", filters.toString()));
+                    .setFacets(facets).set("facetFilters", buildFacetFilters(refinementFilters, disjunctiveFacet)));
         }
         return queries;
     }
 
+    /**
+     * Build the facet filters combining compiled refinements.
+     * Each refinement filter caches its own `facetFilters` item the first time it is compiled, so only the first
+     * query formats them: the other queries merely join the cached items.
+     *
+     * @param refinementFilters Compiled refinements, by facet name.
+     * @param excludedFacet Optional facet whose refinements should be ignored.
+     * @return The value of the `facetFilters` parameter (using JSON array notation), or an empty string if there are
+     *         no refinements.
+     */
+    static private @NonNull String buildFacetFilters(@NonNull Map<String, List<Filter>> refinementFilters, @Nullable String excludedFacet) {
+        List<Filter> filters = new ArrayList<>();
+        for (Map.Entry<String, List<Filter>> elt : refinementFilters.entrySet()) {
+            if (!elt.getKey().equals(excludedFacet)) {
+                filters.addAll(elt.getValue());
+            }
+        }
+        return filters.isEmpty() ? "" : Filter.and(filters).buildFacetFilters();
+    }
+
     /**
      * Aggregate results from multiple queries into disjunctive faceting results.
      *
@@ -206,21 +216,46 @@ public abstract class DisjunctiveFaceting {
      * @throws AlgoliaException
      */
     static private JSONObject aggregateDisjunctiveFacetingResults(@NonNull JSONObject answers, @NonNull List<String> disjunctiveFacets, @NonNull Map<String, List<String>> refinements) throws AlgoliaException
+    {
+        // first answer stores the hits + regular facets
+        try {
+            JSONArray results = answers.getJSONArray("results");
+            List<JSONObject> facetResults = new ArrayList<>(results.length() - 1);
+            for (int i = 1; i < results.length(); ++i) {
+                facetResults.add(results.getJSONObject(i));
+            }
+            return aggregateDisjunctiveFacetingResults(results.getJSONObject(0), facetResults, disjunctiveFacets, refinements);
+        } catch (JSONException e) {
+            throw new AlgoliaException("Failed to aggregate results", e);
+        }
+    }
+
+    /**
+     * Aggregate individual results into disjunctive faceting results.
+     *
+     * @param aggregatedAnswer The hits result. It is modified in place and returned.
+     * @param facetResults The results of the disjunctive facet queries. Null items (pending results) are ignored.
+     * @param disjunctiveFacets List of disjunctive facets.
+     * @param refinements Facet refinements.
+     * @return The aggregated results.
+     * @throws AlgoliaException
+     */
+    static private JSONObject aggregateDisjunctiveFacetingResults(@NonNull JSONObject aggregatedAnswer, @NonNull List<JSONObject> facetResults, @NonNull List<String> disjunctiveFacets, @NonNull Map<String, List<String>> refinements) throws AlgoliaException
     {
         Map<String, List<String>> disjunctiveRefinements = computeDisjunctiveRefinements(disjunctiveFacets, refinements);
 
         // aggregate answers
-        // first answer stores the hits + regular facets
         try {
             boolean nonExhaustiveFacetsCount = false;
-            JSONArray results = answers.getJSONArray("results");
-            JSONObject aggregatedAnswer = results.getJSONObject(0);
             JSONObject disjunctiveFacetsJSON = new JSONObject();
-            for (int i = 1; i < results.length(); ++i) {
-                if (!results.getJSONObject(i).optBoolean("exhaustiveFacetsCount")) {
+            for (JSONObject result : facetResults) {
+                if (result == null) {
+                    continue;
+                }
+                if (!result.optBoolean("exhaustiveFacetsCount")) {
                     nonExhaustiveFacetsCount = true;
                 }
-                JSONObject facets = results.getJSONObject(i).getJSONObject("facets");
+                JSONObject facets = result.getJSONObject("facets");
                 @SuppressWarnings("unchecked")
                 Iterator<String> keys = facets.keys();
                 while (keys.hasNext()) {
@@ -247,4 +282,135 @@ public abstract class DisjunctiveFaceting {
             throw new AlgoliaException("Failed to aggregate results", e);
         }
     }
+
+    // ----------------------------------------------------------------------
+    // Progressive mode
+    // ----------------------------------------------------------------------
+
+    /**
+     * A disjunctive faceting request whose queries are run individually, delivering results progressively.
+     *
+     * **Note:** Completion handlers are called on the main thread, hence this class is not thread-safe: all its
+     * state is accessed from the main thread only (apart from the cancellation flag).
+     */
+    private class ProgressiveRequest implements Request {
+        private final @NonNull List<Query> queries;
+        private final @NonNull List<String> disjunctiveFacets;
+        private final @NonNull Map<String, List<String>> refinements;
+        private final @NonNull ProgressiveCompletionHandler completionHandler;
+
+        /** Sub-requests, one per query. */
+        private final List<Request> requests;
+
+        /** Result of the hits query; null until available. */
+        private JSONObject hitsResult;
+
+        /** Results of the disjunctive facet queries; items are null until available. */
+        private final List<JSONObject> facetResults;
+
+        /** Number of queries still running. */
+        private int pendingCount;
+
+        private volatile boolean cancelled = false;
+        private volatile boolean finished = false;
+
+        ProgressiveRequest(@NonNull List<Query> queries, @NonNull List<String> disjunctiveFacets, @NonNull Map<String, List<String>> refinements, @NonNull ProgressiveCompletionHandler completionHandler) {
+            this.queries = queries;
+            this.disjunctiveFacets = disjunctiveFacets;
+            this.refinements = refinements;
+            this.completionHandler = completionHandler;
+            this.requests = new ArrayList<>(queries.size());
+            this.facetResults = new ArrayList<>(Collections.<JSONObject>nCopies(queries.size() - 1, null));
+            this.pendingCount = queries.size();
+        }
+
+        ProgressiveRequest start() {
+            for (int i = 0; i < queries.size(); ++i) {
+                final int index = i;
+                requests.add(searchAsync(queries.get(i), new CompletionHandler() {
+                    @Override
+                    public void requestCompleted(JSONObject content, AlgoliaException error) {
+                        queryCompleted(index, content, error);
+                    }
+                }));
+            }
+            return this;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            for (Request request : requests) {
+                request.cancel();
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished || cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void queryCompleted(int index, JSONObject content, AlgoliaException error) {
+            if (isFinished()) {
+                return;
+            }
+            pendingCount -= 1;
+            if (error == null && content == null) {
+                error = new AlgoliaException("No content returned"); // should never happen
+            }
+            if (error != null) {
+                // Fail fast: the final results cannot be computed anyway.
+                finished = true;
+                for (Request request : requests) {
+                    request.cancel();
+                }
+                completionHandler.requestCompleted(null, error);
+                return;
+            }
+            if (index == 0) {
+                hitsResult = content;
+            } else {
+                facetResults.set(index - 1, content);
+            }
+            // Nothing can be delivered before the hits.
+            if (hitsResult == null) {
+                return;
+            }
+            JSONObject aggregatedResults;
+            try {
+                // Work on a shallow copy of the hits result, since it is aggregated again on every update.
+                aggregatedResults = aggregateDisjunctiveFacetingResults(copy(hitsResult), facetResults, disjunctiveFacets, refinements);
+            } catch (AlgoliaException e) {
+                finished = true;
+                completionHandler.requestCompleted(null, e);
+                return;
+            }
+            if (pendingCount == 0) {
+                finished = true;
+                completionHandler.requestCompleted(aggregatedResults, null);
+            } else {
+                completionHandler.requestProgressed(aggregatedResults);
+            }
+        }
+    }
+
+    private static @NonNull JSONObject copy(@NonNull JSONObject object) {
+        JSONObject result = new JSONObject();
+        try {
+            @SuppressWarnings("unchecked")
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                result.put(key, object.get(key));
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e); // should never happen
+        }
+        return result;
+    }
 }
@@ -332,4 +332,16 @@ public class PlacesQuery extends AbstractQuery {
     PlacesQuery set(@NonNull String name, @Nullable Object value) {
         return (PlacesQuery)super.set(name, value);
     }
+
+    /**
+     * Derive a new query from this one, with one parameter changed.
+     * This query is left untouched. Parameters are shared between both queries, so that deriving a query is cheap.
+     *
+     * @param name The parameter's name.
+     * @param value The parameter's value, or null to remove it.
+     * @return A new query.
+     */
+    public @NonNull PlacesQuery with(@NonNull String name, @Nullable Object value) {
+        return new PlacesQuery(this).set(name, value);
+    }
 }
\ No newline at end of file
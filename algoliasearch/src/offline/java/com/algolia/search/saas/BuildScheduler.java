@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Schedules builds of local indices.
+ *
+ * Jobs are queued per index: at most one job runs at any given time for a given index. A job may target several
+ * indices (e.g. moving an index onto another one), in which case it waits until all of them are idle. Jobs with a
+ * higher priority run first, then jobs submitted earlier. A job never overtakes a job with the same or higher
+ * priority targeting one of its indices, even if that job is waiting for another index. Jobs targeting different
+ * indices may run in parallel, up to a maximum number of concurrent jobs (building an index is CPU and memory
+ * intensive, so we still want to limit resource consumption).
+ *
+ * Jobs may optionally be:
+ *
+ * - **coalesced:** a job submitted with a coalescing key is dropped if a job with the same index and key is still
+ *   pending;
+ * - **cancellable:** a pending job submitted with a cancellation handler may be removed from the queue before it
+ *   starts (see {@link #cancelPending(String)}).
+ */
+class BuildScheduler {
+    /**
+     * Priority of a job.
+     * Declared in decreasing order of priority.
+     */
+    enum Priority {
+        /** Jobs explicitly triggered by the user: transaction commits, manual builds, etc. */
+        USER,
+        /** Background jobs, like syncs. */
+        BACKGROUND
+    }
+
+    /** A scheduled job. */
+    private class Job implements Comparable<Job>, Runnable {
+        final @NonNull Set<String> indexNames;
+        final @NonNull Priority priority;
+        final @Nullable String coalescingKey;
+        final @NonNull Runnable body;
+        final @Nullable Runnable cancellationHandler;
+        final long seqNo;
+        final long submissionTime;
+
+        Job(@NonNull Set<String> indexNames, @NonNull Priority priority, @Nullable String coalescingKey, @NonNull Runnable body, @Nullable Runnable cancellationHandler) {
+            this.indexNames = indexNames;
+            this.priority = priority;
+            this.coalescingKey = coalescingKey;
+            this.body = body;
+            this.cancellationHandler = cancellationHandler;
+            this.seqNo = nextSeqNo++;
+            this.submissionTime = System.currentTimeMillis();
+        }
+
+        @Override
+        public int compareTo(@NonNull Job other) {
+            int result = priority.compareTo(other.priority);
+            if (result == 0) {
+                result = seqNo < other.seqNo ? -1 : (seqNo == other.seqNo ? 0 : 1);
+            }
+            return result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                body.run();
+            } finally {
+                jobFinished(this);
+            }
+        }
+    }
+
+    /** Executor on which the jobs are run. */
+    private final Executor executor;
+
+    /** Maximum number of jobs running at the same time. */
+    private final int maxConcurrentJobs;
+
+    /** Jobs waiting to be run, in order of execution. */
+    private final TreeSet<Job> pendingJobs = new TreeSet<>();
+
+    /** Names of the indices that have a running job. */
+    private final Set<String> busyIndices = new HashSet<>();
+
+    /** Number of running jobs. */
+    private int runningCount;
+
+    /** Sequence number of the next submitted job. */
+    private long nextSeqNo = 0;
+
+    // Statistics
+    // ----------
+
+    private int submittedCount;
+    private int coalescedCount;
+    private int cancelledCount;
+    private int completedCount;
+    private long totalWaitTime;
+    private long maxWaitTime;
+
+    // ----------------------------------------------------------------------
+    // Initialization
+    // ----------------------------------------------------------------------
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param executor Executor on which to run the jobs. It should have at least `maxConcurrentJobs` threads.
+     * @param maxConcurrentJobs Maximum number of jobs running at the same time.
+     */
+    BuildScheduler(@NonNull Executor executor, int maxConcurrentJobs) {
+        this.executor = executor;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    // ----------------------------------------------------------------------
+    // Operations
+    // ----------------------------------------------------------------------
+
+    /**
+     * Submit a job.
+     *
+     * @param indexName Name of the index targeted by the job.
+     * @param priority The job's priority.
+     * @param coalescingKey Optional coalescing key. If not null and a job with the same index and key is already
+     *                      pending, the job will not be enqueued.
+     * @param body The job's body.
+     * @param cancellationHandler Optional handler called if the job is cancelled before it starts. If null, the job
+     *                            cannot be cancelled.
+     * @return `true` if the job was enqueued, `false` if it was coalesced with a pending job.
+     */
+    boolean submit(@NonNull String indexName, @NonNull Priority priority, @Nullable String coalescingKey, @NonNull Runnable body, @Nullable Runnable cancellationHandler) {
+        return submit(Collections.singleton(indexName), priority, coalescingKey, body, cancellationHandler);
+    }
+
+    private boolean submit(@NonNull Set<String> indexNames, @NonNull Priority priority, @Nullable String coalescingKey, @NonNull Runnable body, @Nullable Runnable cancellationHandler) {
+        List<Job> jobsToStart;
+        synchronized (this) {
+            if (coalescingKey != null) {
+                for (Job job : pendingJobs) {
+                    if (job.indexNames.equals(indexNames) && coalescingKey.equals(job.coalescingKey)) {
+                        coalescedCount += 1;
+                        return false;
+                    }
+                }
+            }
+            pendingJobs.add(new Job(indexNames, priority, coalescingKey, body, cancellationHandler));
+            submittedCount += 1;
+            jobsToStart = dispatch();
+        }
+        start(jobsToStart);
+        return true;
+    }
+
+    /**
+     * Cancel all cancellable jobs pending for an index.
+     * Running jobs are not affected.
+     *
+     * @param indexName Name of the index whose jobs should be cancelled.
+     * @return The number of cancelled jobs.
+     */
+    int cancelPending(@NonNull String indexName) {
+        List<Job> cancelledJobs = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Job> iterator = pendingJobs.iterator();
+            while (iterator.hasNext()) {
+                Job job = iterator.next();
+                if (job.indexNames.contains(indexName) && job.cancellationHandler != null) {
+                    iterator.remove();
+                    cancelledJobs.add(job);
+                }
+            }
+            cancelledCount += cancelledJobs.size();
+        }
+        // Call the handlers outside of the critical section.
+        for (Job job : cancelledJobs) {
+            job.cancellationHandler.run();
+        }
+        return cancelledJobs.size();
+    }
+
+    /**
+     * Get an executor submitting jobs to this scheduler for a given set of indices and priority.
+     * This is intended to be used with {@link AbstractClient.AsyncTaskRequest}. Jobs submitted this way can be neither
+     * coalesced nor cancelled.
+     *
+     * @param priority Priority of the jobs.
+     * @param indexNames Names of the indices targeted by the jobs. Jobs are serialized with any other job targeting
+     *                   one of these indices.
+     * @return An executor.
+     */
+    @NonNull Executor executorFor(@NonNull final Priority priority, @NonNull String... indexNames) {
+        final Set<String> indexNameSet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(indexNames)));
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                BuildScheduler.this.submit(indexNameSet, priority, null, command, null);
+            }
+        };
+    }
+
+    /**
+     * Get a snapshot of this scheduler's statistics.
+     *
+     * @return The current statistics.
+     */
+    synchronized @NonNull OfflineClient.BuildStats getStats() {
+        OfflineClient.BuildStats stats = new OfflineClient.BuildStats();
+        stats.pendingCount = pendingJobs.size();
+        stats.runningCount = runningCount;
+        stats.submittedCount = submittedCount;
+        stats.coalescedCount = coalescedCount;
+        stats.cancelledCount = cancelledCount;
+        stats.completedCount = completedCount;
+        stats.totalWaitTime = totalWaitTime;
+        stats.maxWaitTime = maxWaitTime;
+        return stats;
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation
+    // ----------------------------------------------------------------------
+
+    /**
+     * Dequeue as many pending jobs as allowed.
+     * Must be called with the scheduler's lock held.
+     *
+     * @return The jobs to start. They must be started *outside* of the critical section, because the executor may
+     *         run them synchronously.
+     */
+    private @NonNull List<Job> dispatch() {
+        List<Job> jobsToStart = new ArrayList<>();
+        // Indices of the jobs that have to wait: later jobs must not overtake them on those indices.
+        Set<String> reservedIndices = new HashSet<>();
+        Iterator<Job> iterator = pendingJobs.iterator();
+        while (runningCount < maxConcurrentJobs && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (!Collections.disjoint(busyIndices, job.indexNames) || !Collections.disjoint(reservedIndices, job.indexNames)) {
+                reservedIndices.addAll(job.indexNames);
+                continue;
+            }
+            iterator.remove();
+            busyIndices.addAll(job.indexNames);
+            runningCount += 1;
+            long waitTime = System.currentTimeMillis() - job.submissionTime;
+            totalWaitTime += waitTime;
+            maxWaitTime = Math.max(maxWaitTime, waitTime);
+            jobsToStart.add(job);
+        }
+        return jobsToStart;
+    }
+
+    private void start(@NonNull List<Job> jobs) {
+        for (Job job : jobs) {
+            executor.execute(job);
+        }
+    }
+
+    private void jobFinished(@NonNull Job job) {
+        List<Job> jobsToStart;
+        synchronized (this) {
+            busyIndices.removeAll(job.indexNames);
+            runningCount -= 1;
+            completedCount += 1;
+            jobsToStart = dispatch();
+        }
+        start(jobsToStart);
+    }
+}
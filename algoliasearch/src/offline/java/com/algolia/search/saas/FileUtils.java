@@ -25,7 +25,10 @@ package com.algolia.search.saas;
 
 import android.support.annotation.NonNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -63,15 +66,52 @@ class FileUtils
      */
     public static void writeFile(@NonNull File destinationFile, @NonNull InputStream content) throws IOException {
         byte[] buffer = new byte[64 * 1024]; // 64 kB buffer
-        FileOutputStream outputStream = new FileOutputStream(destinationFile);
         try {
-            int bytesRead;
-            while ((bytesRead = content.read(buffer)) >= 0) {
-                outputStream.write(buffer, 0, bytesRead);
+            FileOutputStream outputStream = new FileOutputStream(destinationFile);
+            try {
+                int bytesRead;
+                while ((bytesRead = content.read(buffer)) >= 0) {
+                    outputStream.write(buffer, 0, bytesRead);
+                }
+            } finally {
+                outputStream.close();
             }
         } finally {
             content.close();
-            outputStream.close();
         }
     }
+
+    /**
+     * Write a string to a file, in UTF-8 encoding.
+     *
+     * @param destinationFile The file to be written to. The parent directory must exist. If the file already exists,
+     *                        it will be overwritten.
+     * @param content The string to write.
+     * @throws IOException if anything goes wrong.
+     */
+    public static void writeFile(@NonNull File destinationFile, @NonNull String content) throws IOException {
+        writeFile(destinationFile, new ByteArrayInputStream(content.getBytes("UTF-8")));
+    }
+
+    /**
+     * Read a whole file as a string, in UTF-8 encoding.
+     *
+     * @param file The file to read.
+     * @return The file's content.
+     * @throws IOException if anything goes wrong.
+     */
+    public static @NonNull String readFile(@NonNull File file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024]; // 64 kB buffer
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) >= 0) {
+                content.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return content.toString("UTF-8");
+    }
 }
@@ -24,6 +24,7 @@
 package com.algolia.search.saas;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -162,4 +163,60 @@ class MirrorSettings
         }
     }
 
+    public @NonNull List<String> getPageHashes()
+    {
+        List<String> result = new ArrayList<>();
+        JSONArray hashesJson = json.optJSONArray("pageHashes");
+        if (hashesJson != null) {
+            for (int i = 0; i < hashesJson.length(); ++i) {
+                result.add(hashesJson.optString(i));
+            }
+        }
+        return result;
+    }
+
+    public void setPageHashes(@NonNull List<String> pageHashes)
+    {
+        try {
+            json.put("pageHashes", new JSONArray(pageHashes));
+        }
+        catch (JSONException e) {
+            // Should never happen.
+        }
+    }
+
+    public long getAdaptiveDelayBetweenSyncs()
+    {
+        return json.optLong("adaptiveDelayBetweenSyncs");
+    }
+
+    public void setAdaptiveDelayBetweenSyncs(long delay)
+    {
+        try {
+            json.put("adaptiveDelayBetweenSyncs", delay);
+        }
+        catch (JSONException e) {
+            // Should never happen.
+        }
+    }
+
+    public @Nullable String getContentHash()
+    {
+        return json.optString("contentHash", null);
+    }
+
+    public void setContentHash(@Nullable String contentHash)
+    {
+        if (contentHash == null) {
+            json.remove("contentHash");
+            return;
+        }
+        try {
+            json.put("contentHash", contentHash);
+        }
+        catch (JSONException e) {
+            // Should never happen.
+        }
+    }
+
 }
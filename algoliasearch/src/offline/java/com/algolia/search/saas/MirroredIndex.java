@@ -39,17 +39,24 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
  * An online index that can also be mirrored locally.
@@ -133,9 +140,9 @@ import java.util.concurrent.TimeUnit;
  *   an index would involve running the app on each mobile platform as part of your build process and capturing the
  *   filesystem.
  *
- * Also, the build process is purposedly single-threaded across all indices, which means that on most modern devices
- * with multi-core CPUs, the impact of manual building on the app's performance will be very moderate, especially
- * regarding UI responsiveness.
+ * Also, the build process is purposedly single-threaded for a given index, and the number of indices built at the same
+ * time is limited, which means that on most modern devices with multi-core CPUs, the impact of manual building on the
+ * app's performance will be very moderate, especially regarding UI responsiveness.
  *
  *
  * ## Limitations
@@ -160,11 +167,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class MirroredIndex extends Index
 {
-    private LocalIndex localIndex;
-
     private boolean mirrored;
     private MirrorSettings mirrorSettings = new MirrorSettings();
     private long delayBetweenSyncs = DEFAULT_DELAY_BETWEEN_SYNCS;
+    private boolean adaptiveSyncEnabled = false;
+    private long minDelayBetweenSyncs = DEFAULT_MIN_DELAY_BETWEEN_SYNCS;
+    private long maxDelayBetweenSyncs = DEFAULT_MAX_DELAY_BETWEEN_SYNCS;
 
     private boolean syncing;
     private File tmpDir;
@@ -173,6 +181,9 @@ public class MirroredIndex extends Index
     private Throwable error;
     private SyncStats stats;
 
+    /** Cache for offline search results. Null when disabled. */
+    private volatile OfflineSearchCache offlineSearchCache;
+
     private Set<SyncListener> syncListeners = new HashSet<>();
     private Set<BuildListener> buildListeners = new HashSet<>();
 
@@ -192,9 +203,33 @@ public class MirroredIndex extends Index
     /** Default minimum delay between two syncs (in milliseconds). */
     public static final long DEFAULT_DELAY_BETWEEN_SYNCS = 1000 * 60 * 60 * 24; // 1 day
 
+    /** Default lower bound of the delay between two syncs when adaptive sync is enabled (in milliseconds). */
+    public static final long DEFAULT_MIN_DELAY_BETWEEN_SYNCS = 1000 * 60 * 60; // 1 hour
+
+    /** Default upper bound of the delay between two syncs when adaptive sync is enabled (in milliseconds). */
+    public static final long DEFAULT_MAX_DELAY_BETWEEN_SYNCS = 1000 * 60 * 60 * 24 * 7; // 1 week
+
+    /** Maximum jitter added to the delay between syncs when adaptive sync is enabled, as a fraction of the delay. */
+    private static final double MAX_SYNC_JITTER = 0.1;
+
     /** Default delay before launching an offline request (in milliseconds). */
     public static final long DEFAULT_OFFLINE_FALLBACK_TIMEOUT = 1000; // 1s
 
+    /** Default lower bound of the adaptive offline fallback timeout (in milliseconds). */
+    public static final long DEFAULT_MIN_OFFLINE_FALLBACK_TIMEOUT = 200; // 200 ms
+
+    /** Default upper bound of the adaptive offline fallback timeout (in milliseconds). */
+    public static final long DEFAULT_MAX_OFFLINE_FALLBACK_TIMEOUT = 3000; // 3s
+
+    /** Default percentile of online latencies used as adaptive offline fallback timeout. */
+    public static final double DEFAULT_OFFLINE_FALLBACK_PERCENTILE = 0.9;
+
+    /** Number of online latencies remembered per request type. */
+    private static final int LATENCY_SAMPLE_COUNT = 50;
+
+    /** Minimum number of online latencies before the adaptive offline fallback timeout kicks in. */
+    private static final int MIN_LATENCY_SAMPLE_COUNT = 5;
+
     // ----------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------
@@ -295,23 +330,108 @@ public class MirroredIndex extends Index
     }
 
     /**
-     * Lazy instantiate the local index.
+     * Test whether adaptive sync is enabled.
+     *
+     * @return `true` if adaptive sync is enabled, `false` otherwise.
+     */
+    public boolean isAdaptiveSyncEnabled()
+    {
+        return adaptiveSyncEnabled;
+    }
+
+    /**
+     * Enable or disable adaptive sync.
+     *
+     * When enabled, the delay between syncs is learnt from the index's observed change rate, starting from
+     * {@link #getDelayBetweenSyncs()}: it doubles after every sync that fetched unchanged content, and shrinks
+     * proportionally to the fraction of content that changed otherwise (down to half of it when everything changed).
+     * It always stays within {@link #getMinDelayBetweenSyncs()} and {@link #getMaxDelayBetweenSyncs()}. The learnt
+     * delay is persisted with the mirror's settings.
+     *
+     * In addition, {@link #syncIfNeeded()} adds a small, index-specific jitter to the delay, so that several indices
+     * synced at the same time drift apart instead of always hitting the network together.
+     *
+     * @param adaptiveSyncEnabled `true` to enable adaptive sync, `false` to use a fixed delay between syncs.
+     */
+    public void setAdaptiveSyncEnabled(boolean adaptiveSyncEnabled)
+    {
+        this.adaptiveSyncEnabled = adaptiveSyncEnabled;
+    }
+
+    /**
+     * Get the lower bound of the delay between syncs when adaptive sync is enabled.
+     *
+     * @return The minimum delay, in milliseconds.
+     */
+    public long getMinDelayBetweenSyncs()
+    {
+        return minDelayBetweenSyncs;
+    }
+
+    /**
+     * Set the lower bound of the delay between syncs when adaptive sync is enabled.
+     *
+     * @param minDelayBetweenSyncs The minimum delay, in milliseconds.
+     */
+    public void setMinDelayBetweenSyncs(long minDelayBetweenSyncs)
+    {
+        if (minDelayBetweenSyncs <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.minDelayBetweenSyncs = minDelayBetweenSyncs;
+    }
+
+    /**
+     * Get the upper bound of the delay between syncs when adaptive sync is enabled.
+     *
+     * @return The maximum delay, in milliseconds.
+     */
+    public long getMaxDelayBetweenSyncs()
+    {
+        return maxDelayBetweenSyncs;
+    }
+
+    /**
+     * Set the upper bound of the delay between syncs when adaptive sync is enabled.
+     *
+     * @param maxDelayBetweenSyncs The maximum delay, in milliseconds.
+     */
+    public void setMaxDelayBetweenSyncs(long maxDelayBetweenSyncs)
+    {
+        if (maxDelayBetweenSyncs <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxDelayBetweenSyncs = maxDelayBetweenSyncs;
+    }
+
+    /**
+     * Get the delay currently used between syncs.
+     * This is the learnt delay if adaptive sync is enabled, otherwise {@link #getDelayBetweenSyncs()}.
+     *
+     * @return The delay between syncs, in milliseconds (not including any jitter).
      */
-    private synchronized void ensureLocalIndex()
+    public long getEffectiveDelayBetweenSyncs()
     {
-        if (localIndex == null) {
-            localIndex = new LocalIndex(getClient().getRootDataDir().getAbsolutePath(), getClient().getApplicationID(), getIndexName());
+        if (!adaptiveSyncEnabled) {
+            return delayBetweenSyncs;
         }
+        long delay = mirrorSettings.getAdaptiveDelayBetweenSyncs();
+        if (delay <= 0) {
+            delay = delayBetweenSyncs;
+        }
+        return Math.max(minDelayBetweenSyncs, Math.min(maxDelayBetweenSyncs, delay));
     }
 
     /**
      * Get the local index, lazy instantiating it if needed.
+     * The native handle is shared with other instances targeting the same index, and reserved for builds (see
+     * {@link OfflineClient#getLocalIndex(String)}). Read accesses must borrow their own handle (see
+     * {@link OfflineClient#acquireReadHandle(String)}).
      *
      * @return The local index.
      */
     protected LocalIndex getLocalIndex() {
-        ensureLocalIndex();
-        return localIndex;
+        return getClient().getLocalIndex(getIndexName());
     }
 
     private File getDataDir()
@@ -352,11 +472,12 @@ public class MirroredIndex extends Index
     // do it. Therefore:
     //
     // - Sync uses a synchronized boolean as mutex (`syncing`).
-    // - All syncs for all indices are executed on a sequential queue. (Building an index is CPU and memory intensive
-    //   and we don't want to kill the device!)
-    //
-    // NOTE: Although the SDK supports concurrent read accesses, search and browse use `AsyncTask`s, which are always
-    // executed sequentially since Android 3.0 (see <http://developer.android.com/reference/android/os/AsyncTask.html>).
+    // - Builds are scheduled per index: at most one build runs at any time for a given index, and the number of
+    //   concurrent builds is limited. (Building an index is CPU and memory intensive and we don't want to kill the
+    //   device!) Several syncs of the same index requested in a row are coalesced.
+    // - Reads (search, browse, get objects...) hold the index's read lock, and are executed on a bounded pool, so
+    //   that they can run concurrently. The build runs in parallel with reads, and only holds the index's write lock
+    //   briefly to commit. (See `OfflineClient.buildLocalIndex()`.)
     // ----------------------------------------------------------------------
 
     // ----------------------------------------------------------------------
@@ -373,6 +494,7 @@ public class MirroredIndex extends Index
         protected long fetchTime;
         protected long buildTime;
         protected long totalTime;
+        protected boolean buildSkipped;
 
         public int getObjectCount()
         {
@@ -399,9 +521,19 @@ public class MirroredIndex extends Index
             return totalTime;
         }
 
+        /**
+         * Test whether the build was skipped because the fetched content was identical to the previous sync's.
+         *
+         * @return `true` if the build was skipped, `false` otherwise.
+         */
+        public boolean isBuildSkipped()
+        {
+            return buildSkipped;
+        }
+
         @Override public String toString()
         {
-            return String.format("%s{objects=%d, files=%d, fetch=%dms, build=%dms, total=%dms}", this.getClass().getSimpleName(), objectCount, fileCount, fetchTime, buildTime, totalTime);
+            return String.format("%s{objects=%d, files=%d, fetch=%dms, build=%dms, total=%dms, buildSkipped=%b}", this.getClass().getSimpleName(), objectCount, fileCount, fetchTime, buildTime, totalTime, buildSkipped);
         }
     }
 
@@ -444,9 +576,11 @@ public class MirroredIndex extends Index
 
     /**
      * Launch a sync.
-     * If a sync is already running, this call is ignored. Otherwise, the sync is enqueued and runs in the background.
+     * If a sync is already pending or running, this call is ignored. Otherwise, the sync is enqueued and runs in the
+     * background.
      *
-     * NOTE: All index syncs are sequential: no two syncs can run at the same time.
+     * NOTE: Syncs have a lower priority than builds explicitly requested by the user (transaction commits, manual
+     * builds). A pending sync may be cancelled by {@link OfflineClient#cancelPendingBuilds(String)}.
      *
      * @throws IllegalStateException If no data selection queries were set.
      */
@@ -460,13 +594,22 @@ public class MirroredIndex extends Index
                 return;
             syncing = true;
         }
-        getClient().localBuildExecutorService.submit(new Runnable()
+        getClient().buildScheduler.submit(getIndexName(), BuildScheduler.Priority.BACKGROUND, "sync", new Runnable()
         {
             @Override
             public void run()
             {
                 _sync();
             }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (MirroredIndex.this) {
+                    syncing = false;
+                }
+            }
         });
     }
 
@@ -480,11 +623,43 @@ public class MirroredIndex extends Index
     public void syncIfNeeded()
     {
         long currentDate = System.currentTimeMillis();
-        if (currentDate - mirrorSettings.getLastSyncDate().getTime() > delayBetweenSyncs || mirrorSettings.getQueriesModificationDate().compareTo(mirrorSettings.getLastSyncDate()) > 0) {
+        long delay = getEffectiveDelayBetweenSyncs();
+        if (adaptiveSyncEnabled) {
+            // Deterministic jitter, so that indices synced together spread out over time.
+            delay += (long)(delay * MAX_SYNC_JITTER * ((getIndexName().hashCode() & 0x7fffffff) % 1000) / 1000.0);
+        }
+        if (currentDate - mirrorSettings.getLastSyncDate().getTime() > delay || mirrorSettings.getQueriesModificationDate().compareTo(mirrorSettings.getLastSyncDate()) > 0) {
             sync();
         }
     }
 
+    /**
+     * Learn the delay until the next sync from the outcome of the current one.
+     *
+     * @param changeRatio Estimated fraction of the content that changed since the previous sync, between 0 and 1.
+     */
+    private void updateAdaptiveDelay(double changeRatio)
+    {
+        long newDelay = computeAdaptiveDelay(getEffectiveDelayBetweenSyncs(), changeRatio, minDelayBetweenSyncs, maxDelayBetweenSyncs);
+        mirrorSettings.setAdaptiveDelayBetweenSyncs(newDelay);
+    }
+
+    /**
+     * Compute the next delay between syncs: unchanged content doubles the delay, otherwise the delay shrinks in
+     * proportion to the changed fraction, down to half.
+     *
+     * @param delay Current delay, in milliseconds.
+     * @param changeRatio Estimated fraction of the content that changed since the previous sync, between 0 and 1.
+     * @param minDelay Lower bound of the result, in milliseconds.
+     * @param maxDelay Upper bound of the result, in milliseconds.
+     * @return The next delay, in milliseconds.
+     */
+    static long computeAdaptiveDelay(long delay, double changeRatio, long minDelay, long maxDelay)
+    {
+        double factor = changeRatio == 0 ? 2 : Math.max(0.5, 1 - changeRatio);
+        return Math.max(minDelay, Math.min(maxDelay, (long)(delay * factor)));
+    }
+
     /**
      * Refresh the local mirror.
      * WARNING: Should be called from a background thread.
@@ -516,11 +691,26 @@ public class MirroredIndex extends Index
             // NOTE: We are doing everything sequentially, because this is a background job: we care more about
             // resource consumption than about how long it will take.
 
+            // Hash the fetched content as we go, so that we can skip the build if nothing changed since the last sync.
+            // NOTE: Only the settings and the hits are hashed: other attributes (cursor, processing time...) vary
+            // from one request to the next.
+            // Pages are also hashed individually, to estimate how much of the content changed.
+            final MessageDigest contentDigest;
+            final MessageDigest pageDigest;
+            try {
+                contentDigest = MessageDigest.getInstance("SHA-1");
+                pageDigest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e); // should never happen
+            }
+            final List<String> pageHashes = new ArrayList<>();
+
             // Fetch settings.
             {
                 JSONObject settingsJSON = this.getSettings(1);
                 settingsFile = new File(tmpDir, "settings.json");
                 String data = settingsJSON.toString();
+                contentDigest.update(data.getBytes("UTF-8"));
                 Writer writer = new OutputStreamWriter(new FileOutputStream(settingsFile), "UTF-8");
                 writer.write(data);
                 writer.close();
@@ -554,6 +744,9 @@ public class MirroredIndex extends Index
                         break;
                     }
                     retrievedObjects += hits.length();
+                    byte[] pageHash = pageDigest.digest(hits.toString().getBytes("UTF-8"));
+                    pageHashes.add(toHexString(pageHash));
+                    contentDigest.update(pageHash);
                 }
                 while (retrievedObjects < query.maxObjects && cursor != null);
 
@@ -565,16 +758,30 @@ public class MirroredIndex extends Index
             stats.fetchTime = afterFetchTime - startTime;
             stats.fileCount = objectFiles.size();
 
-            // Build the index.
-            _buildOffline(settingsFile, objectFiles.toArray(new File[objectFiles.size()]));
+            // Build the index, unless the content is the same as the local data.
+            final String contentHash = toHexString(contentDigest.digest());
+            if (contentHash.equals(mirrorSettings.getContentHash()) && hasOfflineData()) {
+                stats.buildSkipped = true;
+            } else {
+                _buildOffline(settingsFile, objectFiles.toArray(new File[objectFiles.size()]));
+            }
 
             // Update statistics.
             long afterBuildTime = System.currentTimeMillis();
             stats.buildTime = afterBuildTime - afterFetchTime;
             stats.totalTime = afterBuildTime - startTime;
 
-            // Remember the last sync date.
+            // Learn from the observed change rate.
+            // NOTE: Without hashes from a previous sync (e.g. first sync), nothing can be learnt: keep the delay as is.
+            List<String> previousPageHashes = mirrorSettings.getPageHashes();
+            if (adaptiveSyncEnabled && !previousPageHashes.isEmpty()) {
+                updateAdaptiveDelay(stats.buildSkipped ? 0 : estimateChangeRatio(previousPageHashes, pageHashes));
+            }
+
+            // Remember the last sync date and the content hashes.
             mirrorSettings.setLastSyncDate(new Date());
+            mirrorSettings.setContentHash(contentHash);
+            mirrorSettings.setPageHashes(pageHashes);
             saveMirrorSettings();
 
             // Log statistics.
@@ -610,6 +817,34 @@ public class MirroredIndex extends Index
         }
     }
 
+    /**
+     * Estimate the fraction of the content that changed between two syncs, by comparing the hashes of their pages.
+     * This is only an approximation: a page counts as changed as soon as one of its objects changed.
+     */
+    private static double estimateChangeRatio(@NonNull List<String> oldPageHashes, @NonNull List<String> newPageHashes)
+    {
+        int pageCount = Math.max(oldPageHashes.size(), newPageHashes.size());
+        if (pageCount == 0) {
+            return 0;
+        }
+        int changedPageCount = 0;
+        for (int i = 0; i < pageCount; ++i) {
+            if (i >= oldPageHashes.size() || i >= newPageHashes.size() || !oldPageHashes.get(i).equals(newPageHashes.get(i))) {
+                changedPageCount += 1;
+            }
+        }
+        return (double)changedPageCount / pageCount;
+    }
+
+    private static @NonNull String toHexString(@NonNull byte[] bytes)
+    {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
     // ----------------------------------------------------------------------
     // Manual build
     // ----------------------------------------------------------------------
@@ -622,7 +857,7 @@ public class MirroredIndex extends Index
      * @return `true` if data exists on disk for this index, `false` otherwise.
      */
     public boolean hasOfflineData() {
-        return getLocalIndex().exists();
+        return getClient().hasOfflineData(getIndexName());
     }
 
     /**
@@ -638,7 +873,7 @@ public class MirroredIndex extends Index
      * being called.
      */
     public Request buildOfflineFromFiles(@NonNull final File settingsFile, @NonNull final File[] objectFiles, @Nullable CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler, getClient().localBuildExecutorService) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().buildScheduler.executorFor(BuildScheduler.Priority.USER, getIndexName())) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -654,6 +889,9 @@ public class MirroredIndex extends Index
     /**
      * Replace the local mirror with local data stored in raw resources.
      *
+     * If the mirror was last built from the very same resources (and has not been synced since), nothing is done and
+     * no build events are fired.
+     *
      * @param resources A {@link Resources} instance to read resources from.
      * @param settingsResId Resource identifier of the index settings, in JSON format.
      * @param objectsResIds Resource identifiers of the various objects files. Each file must contain an array of
@@ -665,7 +903,7 @@ public class MirroredIndex extends Index
      * being called.
      */
     public Request buildOfflineFromRawResources(@NonNull final Resources resources, @NonNull final int settingsResId, @NonNull final int[] objectsResIds, @Nullable CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler, getClient().localBuildExecutorService) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().buildScheduler.executorFor(BuildScheduler.Priority.USER, getIndexName())) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -679,6 +917,12 @@ public class MirroredIndex extends Index
     }
 
     private JSONObject _buildOfflineFromRawResources(@NonNull final Resources resources, @NonNull final int settingsResId, @NonNull final int... objectsResIds) throws AlgoliaException {
+        // Skip the import if the same resources have already been imported.
+        final RawResources.Stamp stamp = getClient().getResourcesToImport(getIndexName(), resources, settingsResId, objectsResIds);
+        if (stamp == null) {
+            return new JSONObject();
+        }
+
         // Save resources to independent files on disk.
         // TODO: See if we can have the Offline Core read directly from resources or assets.
         File tmpDir = new File(getClient().getTempDir(), UUID.randomUUID().toString());
@@ -686,15 +930,15 @@ public class MirroredIndex extends Index
             tmpDir.mkdirs();
             // Settings.
             File settingsFile = new File(tmpDir, "settings.json");
-            FileUtils.writeFile(settingsFile, resources.openRawResource(settingsResId));
+            RawResources.copy(resources, settingsResId, settingsFile);
             // Objects.
             File[] objectFiles = new File[objectsResIds.length];
             for (int i = 0; i < objectsResIds.length; ++i) {
                 objectFiles[i] = new File(tmpDir, "objects#" + Integer.toString(objectsResIds[i]) + ".json");
-                FileUtils.writeFile(objectFiles[i], resources.openRawResource(objectsResIds[i]));
+                RawResources.copy(resources, objectsResIds[i], objectFiles[i]);
             }
             // Build the index.
-            return _buildOffline(settingsFile, objectFiles);
+            return _buildOffline(stamp, settingsFile, objectFiles);
         } catch (IOException e) {
             throw new AlgoliaException("Failed to write build resources to disk", e);
         } finally {
@@ -704,6 +948,10 @@ public class MirroredIndex extends Index
     }
 
     private JSONObject _buildOffline(@NonNull File settingsFile, @NonNull File... objectFiles) throws AlgoliaException {
+        return _buildOffline(null, settingsFile, objectFiles);
+    }
+
+    private JSONObject _buildOffline(@Nullable RawResources.Stamp importedResources, @NonNull File settingsFile, @NonNull File... objectFiles) throws AlgoliaException {
         AlgoliaException error = null;
         try {
             // Notify listeners.
@@ -719,7 +967,11 @@ public class MirroredIndex extends Index
             for (int i = 0; i < objectFiles.length; ++i) {
                 objectFilePaths[i] = objectFiles[i].getAbsolutePath();
             }
-            final Response result = getLocalIndex().build(settingsFile.getAbsolutePath(), objectFilePaths, true /* clearIndex */, null /* deletedObjectIDs */);
+            // The local data may no longer match the last synced content (in case of a manual build).
+            // NOTE: The sync sets the hash again after a successful build.
+            mirrorSettings.setContentHash(null);
+            saveMirrorSettings();
+            final Response result = getClient().buildLocalIndex(getIndexName(), settingsFile.getAbsolutePath(), objectFilePaths, true /* clearIndex */, null /* deletedObjectIDs */, importedResources);
             return OfflineClient.parseSearchResults(result);
         }
         catch (AlgoliaException e) {
@@ -775,7 +1027,20 @@ public class MirroredIndex extends Index
          *
          * The timeout can be set through {@link #setOfflineFallbackTimeout(long)}.
          */
-        FALLBACK_ON_TIMEOUT
+        FALLBACK_ON_TIMEOUT,
+
+        /**
+         * Search online and offline at the same time.
+         * If the completion handler is a {@link ProgressiveCompletionHandler}, the offline results are delivered as
+         * soon as they are available, through {@link ProgressiveCompletionHandler#requestProgressed(JSONObject)}.
+         * The online results are then delivered as the final results.
+         *
+         * If the online request fails with a transient error (e.g. network failure), the offline results (if any) are
+         * used as final results. Other errors are reported as is.
+         *
+         * **Note:** Plain completion handlers are called only once, with the online results if available.
+         */
+        PROGRESSIVE
     }
 
     /** Strategy to use for offline fallback. Default = {@link Strategy#FALLBACK_ON_FAILURE}. */
@@ -808,6 +1073,200 @@ public class MirroredIndex extends Index
         this.offlineFallbackTimeout = unit.convert(offlineFallbackTimeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Type of a mixed online/offline request.
+     * Used to track online latencies and offline fallback statistics separately.
+     */
+    public enum RequestType {
+        SEARCH,
+        MULTIPLE_QUERIES,
+        GET_OBJECT,
+        GET_OBJECTS,
+        SEARCH_FOR_FACET_VALUES
+    }
+
+    /**
+     * Statistics about offline fallback for a given type of request.
+     */
+    public static class OfflineFallbackStats
+    {
+        protected int onlineCount;
+        protected int offlineCount;
+        protected int failureCount;
+        protected int latencySampleCount;
+        protected long onlineLatency;
+
+        /** Number of requests that returned online results. */
+        public int getOnlineCount()
+        {
+            return onlineCount;
+        }
+
+        /** Number of requests that returned offline results (i.e. where offline "won"). */
+        public int getOfflineCount()
+        {
+            return offlineCount;
+        }
+
+        /** Number of requests that failed. */
+        public int getFailureCount()
+        {
+            return failureCount;
+        }
+
+        /** Number of online latencies currently used to compute {@link #getOnlineLatency()}. */
+        public int getLatencySampleCount()
+        {
+            return latencySampleCount;
+        }
+
+        /**
+         * Recent online latency, at the configured percentile (see
+         * {@link MirroredIndex#setOfflineFallbackPercentile(double)}).
+         *
+         * @return The latency in milliseconds, or -1 if unknown.
+         */
+        public long getOnlineLatency()
+        {
+            return onlineLatency;
+        }
+
+        @Override public String toString()
+        {
+            return String.format("%s{online=%d, offline=%d, failures=%d, onlineLatency=%dms (%d samples)}", this.getClass().getSimpleName(), onlineCount, offlineCount, failureCount, onlineLatency, latencySampleCount);
+        }
+    }
+
+    /** Trackers of offline fallback statistics, by request type. */
+    private final Map<RequestType, OfflineFallbackTracker> fallbackTrackers = new EnumMap<>(RequestType.class);
+    {
+        for (RequestType requestType : RequestType.values()) {
+            fallbackTrackers.put(requestType, new OfflineFallbackTracker(LATENCY_SAMPLE_COUNT));
+        }
+    }
+
+    /** Whether the offline fallback timeout adapts to observed online latencies. */
+    private boolean adaptiveOfflineFallbackTimeout = false;
+
+    private long minOfflineFallbackTimeout = DEFAULT_MIN_OFFLINE_FALLBACK_TIMEOUT;
+    private long maxOfflineFallbackTimeout = DEFAULT_MAX_OFFLINE_FALLBACK_TIMEOUT;
+    private double offlineFallbackPercentile = DEFAULT_OFFLINE_FALLBACK_PERCENTILE;
+
+    /**
+     * Test whether the offline fallback timeout adapts to observed online latencies.
+     *
+     * @return `true` if the adaptive timeout is enabled, `false` if {@link #getOfflineFallbackTimeout()} is always used.
+     */
+    public boolean isAdaptiveOfflineFallbackTimeout() {
+        return adaptiveOfflineFallbackTimeout;
+    }
+
+    /**
+     * Enable or disable the adaptive offline fallback timeout.
+     *
+     * When enabled, the {@link Strategy#FALLBACK_ON_TIMEOUT} strategy derives its timeout from a percentile of the
+     * recent online latencies of each type of request (see {@link #setOfflineFallbackPercentile(double)}), bounded by
+     * {@link #getMinOfflineFallbackTimeout()} and {@link #getMaxOfflineFallbackTimeout()}. Until enough latencies have
+     * been observed, {@link #getOfflineFallbackTimeout()} is used.
+     *
+     * @param adaptiveOfflineFallbackTimeout `true` to enable the adaptive timeout, `false` to use a fixed timeout.
+     */
+    public void setAdaptiveOfflineFallbackTimeout(boolean adaptiveOfflineFallbackTimeout) {
+        this.adaptiveOfflineFallbackTimeout = adaptiveOfflineFallbackTimeout;
+    }
+
+    /**
+     * Get the lower bound of the adaptive offline fallback timeout.
+     *
+     * @return The minimum timeout, in milliseconds.
+     */
+    public long getMinOfflineFallbackTimeout() {
+        return minOfflineFallbackTimeout;
+    }
+
+    /**
+     * Set the lower bound of the adaptive offline fallback timeout.
+     *
+     * @param minOfflineFallbackTimeout The minimum timeout, in milliseconds. Must not be negative, nor greater than
+     *                                  {@link #getMaxOfflineFallbackTimeout()}.
+     */
+    public void setMinOfflineFallbackTimeout(long minOfflineFallbackTimeout) {
+        if (minOfflineFallbackTimeout < 0 || minOfflineFallbackTimeout > maxOfflineFallbackTimeout) {
+            throw new IllegalArgumentException("Minimum timeout must be in [0, " + maxOfflineFallbackTimeout + "]");
+        }
+        this.minOfflineFallbackTimeout = minOfflineFallbackTimeout;
+    }
+
+    /**
+     * Get the upper bound of the adaptive offline fallback timeout.
+     *
+     * @return The maximum timeout, in milliseconds.
+     */
+    public long getMaxOfflineFallbackTimeout() {
+        return maxOfflineFallbackTimeout;
+    }
+
+    /**
+     * Set the upper bound of the adaptive offline fallback timeout.
+     *
+     * @param maxOfflineFallbackTimeout The maximum timeout, in milliseconds. Must not be less than
+     *                                  {@link #getMinOfflineFallbackTimeout()}.
+     */
+    public void setMaxOfflineFallbackTimeout(long maxOfflineFallbackTimeout) {
+        if (maxOfflineFallbackTimeout < minOfflineFallbackTimeout) {
+            throw new IllegalArgumentException("Maximum timeout must be at least " + minOfflineFallbackTimeout);
+        }
+        this.maxOfflineFallbackTimeout = maxOfflineFallbackTimeout;
+    }
+
+    /**
+     * Get the percentile of online latencies used as adaptive offline fallback timeout.
+     *
+     * @return The percentile, between 0 and 1.
+     */
+    public double getOfflineFallbackPercentile() {
+        return offlineFallbackPercentile;
+    }
+
+    /**
+     * Set the percentile of online latencies used as adaptive offline fallback timeout.
+     *
+     * @param offlineFallbackPercentile The percentile, between 0 and 1 (e.g. 0.9 for the 90th percentile).
+     */
+    public void setOfflineFallbackPercentile(double offlineFallbackPercentile) {
+        if (offlineFallbackPercentile <= 0 || offlineFallbackPercentile > 1) {
+            throw new IllegalArgumentException("Percentile must be in ]0, 1]");
+        }
+        this.offlineFallbackPercentile = offlineFallbackPercentile;
+    }
+
+    /**
+     * Get the offline fallback timeout currently used for a given type of request.
+     *
+     * @param requestType The type of request.
+     * @return The timeout, in milliseconds.
+     */
+    public long getEffectiveOfflineFallbackTimeout(@NonNull RequestType requestType) {
+        if (adaptiveOfflineFallbackTimeout) {
+            OfflineFallbackTracker tracker = fallbackTrackers.get(requestType);
+            if (tracker.getSampleCount() >= MIN_LATENCY_SAMPLE_COUNT) {
+                long latency = tracker.getLatencyPercentile(offlineFallbackPercentile);
+                return Math.max(minOfflineFallbackTimeout, Math.min(maxOfflineFallbackTimeout, latency));
+            }
+        }
+        return offlineFallbackTimeout;
+    }
+
+    /**
+     * Get statistics about offline fallback for a given type of request.
+     *
+     * @param requestType The type of request.
+     * @return A snapshot of the statistics.
+     */
+    public @NonNull OfflineFallbackStats getOfflineFallbackStats(@NonNull RequestType requestType) {
+        return fallbackTrackers.get(requestType).getStats(offlineFallbackPercentile);
+    }
+
     /**
      * Search the online API, falling back to the local mirror if enabled in case of error.
      *
@@ -831,41 +1290,72 @@ public class MirroredIndex extends Index
     /**
      * A mixed online/offline request.
      * This request encapsulates two concurrent online and offline requests, to optimize response time.
+     *
+     * The coordination does not rely on the main thread: both requests run synchronously on background executors, the
+     * fallback timer runs on the client's coordination scheduler, and the request's state is updated atomically. Only
+     * the results are delivered on the main thread.
      */
     private abstract class OnlineOfflineRequest implements Request {
-        private CompletionHandler completionHandler;
-        private boolean cancelled = false;
-        private Request onlineRequest;
-        private Request offlineRequest;
-        private transient boolean mayRunOfflineRequest = true;
-        private Runnable startOfflineRunnable;
+        private final RequestType requestType;
+        private final CompletionHandler completionHandler;
+        private volatile boolean cancelled = false;
+        private volatile Future<?> onlineTask;
+        private volatile Future<?> offlineTask;
+        private volatile ScheduledFuture<?> fallbackTimer;
+
+        /** Strategy in effect when the request was created. */
+        private final Strategy strategy = requestStrategy;
+
+        /** Whether the offline request may (still) be launched. */
+        private final AtomicBoolean mayRunOfflineRequest = new AtomicBoolean(true);
+
+        /** Whether the offline request has been launched. Guarantees that it is launched at most once. */
+        private final AtomicBoolean offlineStarted = new AtomicBoolean(false);
+
+        /** Whether the outcome of the request has been decided. Guarantees that it is decided at most once. */
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        /** Whether the completion handler has been called. Only accessed on the main thread. */
+        private boolean delivered = false;
+
+        /** Whether the online request has returned. */
+        private volatile boolean onlineFinished = false;
+
+        // State of the progressive strategy.
+        // WARNING: Each side writes its own state *before* reading the other side's, so that at least one of them
+        // sees both outcomes.
+        private volatile JSONObject offlineContent;
+        private volatile AlgoliaException offlineError;
+        private volatile AlgoliaException onlineError;
+
+        /** Time when the online request was started. */
+        private volatile long onlineStartTime;
 
         /**
          * Construct a new mixed online/offline request.
          */
-        public OnlineOfflineRequest(@NonNull CompletionHandler completionHandler) {
+        public OnlineOfflineRequest(@NonNull RequestType requestType, @NonNull CompletionHandler completionHandler) {
             if (!mirrored) {
                 throw new IllegalStateException("This index is not mirrored");
             }
+            this.requestType = requestType;
             this.completionHandler = completionHandler;
         }
 
         @Override
         public void cancel() {
             if (!cancelled) {
-                if (onlineRequest != null) {
-                    onlineRequest.cancel();
-                }
-                if (offlineRequest != null) {
-                    offlineRequest.cancel();
-                }
                 cancelled = true;
+                mayRunOfflineRequest.set(false);
+                cancelFuture(fallbackTimer);
+                cancelFuture(onlineTask);
+                cancelFuture(offlineTask);
             }
         }
 
         @Override
         public boolean isFinished() {
-            return onlineRequest.isFinished() && (offlineRequest == null || offlineRequest.isFinished());
+            return completed.get() || cancelled;
         }
 
         @Override
@@ -874,118 +1364,257 @@ public class MirroredIndex extends Index
         }
 
         public OnlineOfflineRequest start() {
-            // WARNING: All callbacks must run sequentially; we cannot afford race conditions between them.
-            // Since most methods use the main thread for callbacks, we have to use it as well.
-
             // If the strategy is "offline only", well, go offline straight away.
-            if (requestStrategy == Strategy.OFFLINE_ONLY) {
+            if (strategy == Strategy.OFFLINE_ONLY) {
                 startOffline();
             }
             // Otherwise, always launch an online request.
             else {
-                if (requestStrategy == Strategy.ONLINE_ONLY || !getLocalIndex().exists()) {
-                    mayRunOfflineRequest = false;
+                if (strategy == Strategy.ONLINE_ONLY || !hasOfflineData()) {
+                    mayRunOfflineRequest.set(false);
                 }
                 startOnline();
             }
-            if (requestStrategy == Strategy.FALLBACK_ON_TIMEOUT && mayRunOfflineRequest) {
+            if (strategy == Strategy.PROGRESSIVE) {
+                // Race both requests.
+                startOffline();
+            }
+            else if (strategy == Strategy.FALLBACK_ON_TIMEOUT && mayRunOfflineRequest.get() && !completed.get()) {
                 // Schedule an offline request to start after a certain delay.
-                startOfflineRunnable = new Runnable() {
+                // The online request cannot succeed after its own timeout, so don't wait longer than that.
+                long fallbackDelay = getEffectiveOfflineFallbackTimeout(requestType);
+                final int requestTimeout = getRequestTimeout();
+                if (requestTimeout > 0) {
+                    fallbackDelay = Math.min(fallbackDelay, requestTimeout);
+                }
+                // NOTE: The timer runs on a dedicated scheduler, so that it fires on time even if the main thread is busy.
+                fallbackTimer = getClient().coordinationExecutorService.schedule(new Runnable() {
                     @Override
                     public void run() {
-                        // If the online request has not returned yet, or has returned an error, use the offline mirror.
-                        // Let's also make sure that we don't start the offline request twice.
-                        if (mayRunOfflineRequest && offlineRequest == null) {
-                            startOffline();
-                        }
+                        // If the online request has not returned yet, use the offline mirror.
+                        // `startOffline()` takes care of not starting the offline request twice.
+                        startOffline();
                     }
-                };
-                getClient().mainHandler.postDelayed(startOfflineRunnable, offlineFallbackTimeout);
+                }, fallbackDelay, TimeUnit.MILLISECONDS);
             }
             return this;
         }
 
+        /**
+         * Get the overall timeout of the online request. To be overridden by requests carrying queries.
+         *
+         * @return The timeout (ms), or 0 for none.
+         */
+        protected int getRequestTimeout() {
+            return 0;
+        }
+
         private void startOnline() {
-            // Avoid launching the request twice.
-            if (onlineRequest != null) {
-                return;
-            }
-            onlineRequest = startOnlineRequest(new CompletionHandler() {
+            onlineStartTime = System.currentTimeMillis();
+            onlineTask = getClient().searchExecutorService.submit(new Runnable() {
                 @Override
-                public void requestCompleted(JSONObject content, AlgoliaException error) {
-                    if (error != null && error.isTransient() && mayRunOfflineRequest) {
-                        startOffline();
-                    } else {
-                        cancelOffline();
-                        callCompletion(content, error);
+                public void run() {
+                    JSONObject content = null;
+                    AlgoliaException error = null;
+                    try {
+                        content = runOnline();
+                    } catch (AlgoliaException e) {
+                        error = e;
                     }
+                    onlineCompleted(content, error);
                 }
             });
         }
 
         private void startOffline() {
-            // NOTE: If we reach this handler, it means the offline request has not been cancelled.
-            if (!mayRunOfflineRequest) {
-                throw new AssertionError("Should never happen");
-            }
-            // Avoid launching the request twice.
-            if (offlineRequest != null) {
+            // Avoid launching the request if obsolete or already launched.
+            if (!mayRunOfflineRequest.get() || !offlineStarted.compareAndSet(false, true)) {
                 return;
             }
-            offlineRequest = startOfflineRequest(new CompletionHandler() {
+            offlineTask = getClient().localSearchExecutorService.submit(new Runnable() {
                 @Override
-                public void requestCompleted(JSONObject content, AlgoliaException error) {
-                    if (onlineRequest != null) {
-                        onlineRequest.cancel();
+                public void run() {
+                    JSONObject content = null;
+                    AlgoliaException error = null;
+                    try {
+                        content = runOffline();
+                    } catch (AlgoliaException e) {
+                        error = e;
                     }
-                    callCompletion(content, error);
+                    offlineCompleted(content, error);
                 }
             });
         }
 
-        protected abstract Request startOnlineRequest(CompletionHandler completionHandler);
+        private void onlineCompleted(JSONObject content, AlgoliaException error) {
+            if (cancelled) {
+                return;
+            }
+            if (error == null) {
+                fallbackTrackers.get(requestType).recordLatency(System.currentTimeMillis() - onlineStartTime);
+            }
+            onlineFinished = true;
+            if (strategy == Strategy.PROGRESSIVE) {
+                onlineCompletedProgressive(content, error);
+            } else if (error != null && error.isTransient() && mayRunOfflineRequest.get()) {
+                // NOTE: If the offline request has already been started by the timer, this is a no-op: its outcome
+                // will be final.
+                startOffline();
+            } else {
+                cancelOffline();
+                complete(content, error, false);
+            }
+        }
+
+        private void offlineCompleted(JSONObject content, AlgoliaException error) {
+            if (cancelled) {
+                return;
+            }
+            if (strategy == Strategy.PROGRESSIVE) {
+                offlineCompletedProgressive(content, error);
+                return;
+            }
+            if (complete(content, error, true)) {
+                Future<?> task = onlineTask;
+                if (task != null) {
+                    if (!onlineFinished) {
+                        // The online request is abandoned: we only know a lower bound of its latency.
+                        fallbackTrackers.get(requestType).recordLatency(System.currentTimeMillis() - onlineStartTime);
+                    }
+                    task.cancel(true);
+                }
+            }
+        }
+
+        private void onlineCompletedProgressive(JSONObject content, AlgoliaException error) {
+            if (error == null || !error.isTransient()) {
+                // The online outcome is final: only transient errors warrant falling back to the offline results.
+                cancelOffline();
+                complete(content, error, false);
+                return;
+            }
+            onlineError = error;
+            JSONObject preliminaryContent = offlineContent;
+            if (preliminaryContent != null) {
+                complete(preliminaryContent, null, true);
+            } else if (!mayRunOfflineRequest.get() || offlineError != null) {
+                cancelOffline();
+                complete(content, error, false);
+            }
+            // Otherwise, wait for the offline request.
+        }
+
+        private void offlineCompletedProgressive(JSONObject content, AlgoliaException error) {
+            if (error == null) {
+                offlineContent = content;
+            } else {
+                offlineError = error;
+            }
+            if (onlineError != null) {
+                // The online request has failed: the offline result is final.
+                complete(content, error, true);
+            } else if (error == null && completionHandler instanceof ProgressiveCompletionHandler && !completed.get()) {
+                final JSONObject preliminaryContent = content;
+                getClient().mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The final result may have been delivered in the meantime.
+                        if (!delivered && !isCancelled()) {
+                            ((ProgressiveCompletionHandler)completionHandler).requestProgressed(preliminaryContent);
+                        }
+                    }
+                });
+            }
+        }
+
+        /** Run the online request synchronously. */
+        protected abstract JSONObject runOnline() throws AlgoliaException;
 
-        protected abstract Request startOfflineRequest(CompletionHandler completionHandler);
+        /** Run the offline request synchronously. */
+        protected abstract JSONObject runOffline() throws AlgoliaException;
 
         /**
          * Cancel any pending offline request and prevent a future one from being launched.
          */
         private void cancelOffline() {
             // Flag the offline request as obsolete.
-            mayRunOfflineRequest = false;
-            // Prevent the start offline request runnable from even running if it is still time.
-            if (startOfflineRunnable != null) {
-                getClient().mainHandler.removeCallbacks(startOfflineRunnable);
-            }
+            mayRunOfflineRequest.set(false);
+            // Prevent the timer from even firing if it is still time.
+            cancelFuture(fallbackTimer);
             // Cancel the offline request if already running.
-            if (offlineRequest != null) {
-                offlineRequest.cancel();
+            cancelFuture(offlineTask);
+        }
+
+        private void cancelFuture(@Nullable Future<?> future) {
+            if (future != null) {
+                future.cancel(true);
             }
         }
 
-        private void callCompletion(JSONObject content, AlgoliaException error) {
-            if (!isCancelled()) {
-                completionHandler.requestCompleted(content, error);
+        /**
+         * Decide the outcome of this request, unless it has already been decided, and deliver it on the main thread.
+         *
+         * @return true if this call decided the outcome, false if it had already been decided.
+         */
+        private boolean complete(final JSONObject content, final AlgoliaException error, boolean offline) {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
             }
+            cancelFuture(fallbackTimer);
+            fallbackTrackers.get(requestType).recordOutcome(error != null ? OfflineFallbackTracker.Outcome.FAILURE : offline ? OfflineFallbackTracker.Outcome.OFFLINE : OfflineFallbackTracker.Outcome.ONLINE);
+            getClient().mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    delivered = true;
+                    if (!isCancelled()) {
+                        completionHandler.requestCompleted(content, error);
+                    }
+                }
+            });
+            return true;
         }
     }
 
+    /**
+     * Tag results returned by the online API with their origin (see `JSON_KEY_ORIGIN`).
+     *
+     * @param content The results to tag. Modified in place.
+     * @return The same results, for convenience.
+     */
+    private static JSONObject tagRemoteOrigin(@NonNull JSONObject content) throws AlgoliaException {
+        try {
+            return content.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_REMOTE);
+        }
+        catch (JSONException e) {
+            throw new AlgoliaException("Failed to patch JSON result");
+        }
+    }
+
+    private static int getQueryRequestTimeout(@Nullable Query query) {
+        return query != null && query.getRequestTimeout() != null ? query.getRequestTimeout() : 0;
+    }
+
     private class OnlineOfflineSearchRequest extends OnlineOfflineRequest {
         private final Query query;
 
         public OnlineOfflineSearchRequest(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
-            super(completionHandler);
+            super(RequestType.SEARCH, completionHandler);
             this.query = query;
         }
 
         @Override
-        protected Request startOnlineRequest(CompletionHandler completionHandler) {
-            return searchOnlineAsync(query, completionHandler);
+        protected int getRequestTimeout() {
+            return getQueryRequestTimeout(query);
         }
 
         @Override
-        protected Request startOfflineRequest(CompletionHandler completionHandler) {
-            return searchOfflineAsync(query, completionHandler);
+        protected JSONObject runOnline() throws AlgoliaException {
+            return searchOnline(query);
+        }
+
+        @Override
+        protected JSONObject runOffline() throws AlgoliaException {
+            return _searchOffline(query);
         }
     }
 
@@ -1008,14 +1637,7 @@ public class MirroredIndex extends Index
     }
 
     private JSONObject searchOnline(@NonNull Query query) throws AlgoliaException {
-        try {
-            JSONObject content = super.search(query);
-            content.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_REMOTE);
-            return content;
-        }
-        catch (JSONException e) {
-            throw new AlgoliaException("Failed to patch JSON result");
-        }
+        return tagRemoteOrigin(super.search(query));
     }
 
     /**
@@ -1040,10 +1662,109 @@ public class MirroredIndex extends Index
         }.start();
     }
 
+    /**
+     * Search the local mirror, delivering the raw results.
+     * The results are the UTF-8 encoded JSON returned by the Offline Core, without any parsing. Use this method when
+     * you don't need a JSON tree, to spare the cost of building one.
+     *
+     * @param query Search query.
+     * @param completionHandler The listener that will be notified of the request's outcome.
+     * @return A cancellable request.
+     * @throws IllegalStateException if mirroring is not activated on this index.
+     */
+    public Request searchOfflineRawAsync(@NonNull Query query, @NonNull RawCompletionHandler completionHandler) {
+        if (!mirrored) {
+            throw new IllegalStateException("Mirroring not activated on this index");
+        }
+        final Query queryCopy = new Query(query);
+        return getClient().new AsyncRawTaskRequest(completionHandler, getClient().localSearchExecutorService) {
+            @NonNull
+            @Override
+            protected byte[] runRaw() throws AlgoliaException {
+                return searchOfflineSyncRaw(queryCopy);
+            }
+        }.start();
+    }
+
     private JSONObject _searchOffline(@NonNull Query query) throws AlgoliaException
     {
-        Response searchResults = getLocalIndex().search(query.build());
-        return OfflineClient.parseSearchResults(searchResults);
+        return OfflineClient.parseResponseData(searchOfflineSyncRaw(query));
+    }
+
+    /**
+     * Search the local mirror synchronously, returning the raw results.
+     * The results are the UTF-8 encoded JSON returned by the Offline Core, without any copy or parsing.
+     *
+     * @param query Search query.
+     * @return Search results, as UTF-8 encoded JSON.
+     * @throws AlgoliaException if the search failed.
+     */
+    protected byte[] searchOfflineSyncRaw(@NonNull Query query) throws AlgoliaException
+    {
+        final OfflineSearchCache cache = offlineSearchCache;
+        final String queryString = query.build();
+        final LocalIndex localIndex = getClient().acquireReadHandle(getIndexName());
+        try {
+            // NOTE: The generation must be read while holding the lock, so that it matches the index's content.
+            final long generation = getClient().getIndexGeneration(getIndexName());
+            if (cache != null) {
+                byte[] cachedResults = cache.get(queryString, generation);
+                if (cachedResults != null) {
+                    return cachedResults;
+                }
+            }
+            byte[] results = OfflineClient.getResponseData(localIndex.search(queryString));
+            if (cache != null && results != null) {
+                cache.put(queryString, results, generation);
+            }
+            return results;
+        } finally {
+            getClient().releaseReadHandle(getIndexName(), localIndex);
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Offline search cache
+    // ----------------------------------------------------------------------
+
+    /**
+     * Enable the offline search cache with default parameters.
+     *
+     * @see #enableOfflineSearchCache(int)
+     */
+    public void enableOfflineSearchCache() {
+        enableOfflineSearchCache(OfflineSearchCache.defaultMaxSize);
+    }
+
+    /**
+     * Enable the offline search cache with custom parameters.
+     * Results of searches on the local mirror are kept in memory, so that repeating a search does not hit the local
+     * index again. Cached results never expire, but are automatically invalidated whenever the local mirror is
+     * rebuilt.
+     *
+     * **Note:** This is independent from the online search cache (see {@link #enableSearchCache()}).
+     *
+     * @param maxRequests Maximum number of requests to keep before removing the least recently used.
+     */
+    public void enableOfflineSearchCache(int maxRequests) {
+        offlineSearchCache = new OfflineSearchCache(maxRequests);
+    }
+
+    /**
+     * Disable and reset the offline search cache.
+     */
+    public void disableOfflineSearchCache() {
+        offlineSearchCache = null;
+    }
+
+    /**
+     * Remove all entries from the offline search cache.
+     */
+    public void clearOfflineSearchCache() {
+        final OfflineSearchCache cache = offlineSearchCache;
+        if (cache != null) {
+            cache.reset();
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -1119,19 +1840,32 @@ public class MirroredIndex extends Index
         private final Client.MultipleQueriesStrategy strategy;
 
         public OnlineOfflineMultipleQueriesRequest(@NonNull List<Query> queries, Client.MultipleQueriesStrategy strategy, @NonNull CompletionHandler completionHandler) {
-            super(completionHandler);
+            super(RequestType.MULTIPLE_QUERIES, completionHandler);
             this.queries = queries;
             this.strategy = strategy;
         }
 
         @Override
-        protected Request startOnlineRequest(CompletionHandler completionHandler) {
-            return multipleQueriesOnlineAsync(queries, strategy, completionHandler);
+        protected int getRequestTimeout() {
+            // The shortest timeout applies to the whole call.
+            int requestTimeout = 0;
+            for (Query query : queries) {
+                int queryTimeout = getQueryRequestTimeout(query);
+                if (queryTimeout > 0 && (requestTimeout == 0 || queryTimeout < requestTimeout)) {
+                    requestTimeout = queryTimeout;
+                }
+            }
+            return requestTimeout;
         }
 
         @Override
-        protected Request startOfflineRequest(CompletionHandler completionHandler) {
-            return multipleQueriesOfflineAsync(queries, strategy, completionHandler);
+        protected JSONObject runOnline() throws AlgoliaException {
+            return multipleQueriesOnline(queries, strategy == null ? null : strategy.toString());
+        }
+
+        @Override
+        protected JSONObject runOffline() throws AlgoliaException {
+            return _multipleQueriesOffline(queries, strategy == null ? null : strategy.toString());
         }
     }
 
@@ -1139,14 +1873,7 @@ public class MirroredIndex extends Index
      * Run multiple queries on this index, explicitly targeting the online API.
      */
     private JSONObject multipleQueriesOnline(@NonNull List<Query> queries, String strategy) throws AlgoliaException {
-        try {
-            JSONObject content = super.multipleQueries(queries, strategy);
-            content.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_REMOTE);
-            return content;
-        }
-        catch (JSONException e) {
-            throw new AlgoliaException("Failed to patch JSON result");
-        }
+        return tagRemoteOrigin(super.multipleQueries(queries, strategy));
     }
 
     /**
@@ -1157,7 +1884,7 @@ public class MirroredIndex extends Index
         if (!mirrored) {
             throw new IllegalStateException("Cannot run offline search on a non-mirrored index");
         }
-        return new MultipleQueryEmulator(this.getIndexName()) {
+        return new MultipleQueryEmulator(this.getIndexName(), getClient().localSearchExecutorService) {
             @Override
             protected JSONObject singleQuery(@NonNull Query query) throws AlgoliaException {
                 return _searchOffline(query);
@@ -1220,8 +1947,13 @@ public class MirroredIndex extends Index
 
     private JSONObject _browseMirror(@NonNull Query query) throws AlgoliaException
     {
-        Response searchResults = getLocalIndex().browse(query.build());
-        return OfflineClient.parseSearchResults(searchResults);
+        final LocalIndex localIndex = getClient().acquireReadHandle(getIndexName());
+        try {
+            Response searchResults = localIndex.browse(query.build());
+            return OfflineClient.parseSearchResults(searchResults);
+        } finally {
+            getClient().releaseReadHandle(getIndexName(), localIndex);
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -1251,19 +1983,19 @@ public class MirroredIndex extends Index
         private final List<String> attributesToRetrieve;
 
         public OnlineOfflineGetObjectRequest(@NonNull String objectID, final @Nullable List<String> attributesToRetrieve, @NonNull CompletionHandler completionHandler) {
-            super(completionHandler);
+            super(RequestType.GET_OBJECT, completionHandler);
             this.objectID = objectID;
             this.attributesToRetrieve = attributesToRetrieve;
         }
 
         @Override
-        protected Request startOnlineRequest(CompletionHandler completionHandler) {
-            return getObjectOnlineAsync(objectID, attributesToRetrieve, completionHandler);
+        protected JSONObject runOnline() throws AlgoliaException {
+            return getObjectOnline(objectID, attributesToRetrieve);
         }
 
         @Override
-        protected Request startOfflineRequest(CompletionHandler completionHandler) {
-            return getObjectOfflineAsync(objectID, attributesToRetrieve, completionHandler);
+        protected JSONObject runOffline() throws AlgoliaException {
+            return _getObjectOffline(objectID, attributesToRetrieve);
         }
     }
 
@@ -1277,8 +2009,13 @@ public class MirroredIndex extends Index
      * @return A cancellable request.
      */
     public Request getObjectOnlineAsync(@NonNull final String objectID, final @Nullable List<String> attributesToRetrieve, @NonNull final CompletionHandler completionHandler) {
-        // TODO: Cannot perform origin tagging because it could conflict with the object's attributes
-        return super.getObjectAsync(objectID, attributesToRetrieve, completionHandler);
+        return getClient().new AsyncTaskRequest(completionHandler) {
+            @NonNull
+            @Override
+            protected JSONObject run() throws AlgoliaException {
+                return getObjectOnline(objectID, attributesToRetrieve);
+            }
+        }.start();
     }
 
     /**
@@ -1292,6 +2029,11 @@ public class MirroredIndex extends Index
         return getObjectOnlineAsync(objectID, null, completionHandler);
     }
 
+    private JSONObject getObjectOnline(@NonNull final String objectID, final @Nullable List<String> attributesToRetrieve) throws AlgoliaException {
+        // NOTE: No origin tagging here, because it could conflict with the object's attributes.
+        return super.getObject(objectID, attributesToRetrieve);
+    }
+
     /**
      * Get an individual object, explicitly targeting the offline mirror, not the online API.
      *
@@ -1362,19 +2104,19 @@ public class MirroredIndex extends Index
         private final List<String> attributesToRetrieve;
 
         public OnlineOfflineGetObjectsRequest(@NonNull List<String> objectIDs, final @Nullable List<String> attributesToRetrieve, @NonNull CompletionHandler completionHandler) {
-            super(completionHandler);
+            super(RequestType.GET_OBJECTS, completionHandler);
             this.objectIDs = objectIDs;
             this.attributesToRetrieve = attributesToRetrieve;
         }
 
         @Override
-        protected Request startOnlineRequest(CompletionHandler completionHandler) {
-            return getObjectsOnlineAsync(objectIDs, attributesToRetrieve, completionHandler);
+        protected JSONObject runOnline() throws AlgoliaException {
+            return getObjectsOnline(objectIDs, attributesToRetrieve);
         }
 
         @Override
-        protected Request startOfflineRequest(CompletionHandler completionHandler) {
-            return getObjectsOfflineAsync(objectIDs, attributesToRetrieve, completionHandler);
+        protected JSONObject runOffline() throws AlgoliaException {
+            return _getObjectsOffline(objectIDs, attributesToRetrieve);
         }
     }
 
@@ -1409,15 +2151,7 @@ public class MirroredIndex extends Index
     }
 
     private JSONObject getObjectsOnline(@NonNull final List<String> objectIDs, final @Nullable List<String> attributesToRetrieve) throws AlgoliaException {
-        try {
-            JSONObject content = super.getObjects(objectIDs, attributesToRetrieve);
-            // TODO: Factorize origin tagging
-            content.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_REMOTE);
-            return content;
-        }
-        catch (JSONException e) {
-            throw new AlgoliaException("Failed to patch JSON result");
-        }
+        return tagRemoteOrigin(super.getObjects(objectIDs, attributesToRetrieve));
     }
 
     /**
@@ -1457,25 +2191,23 @@ public class MirroredIndex extends Index
 
     private JSONObject _getObjectsOffline(@NonNull final List<String> objectIDs, final @Nullable List<String> attributesToRetrieve) throws AlgoliaException
     {
+        final LocalIndex localIndex = getClient().acquireReadHandle(getIndexName());
         try {
             Query query = new Query();
             if (attributesToRetrieve != null) {
                 query.setAttributesToRetrieve(attributesToRetrieve.toArray(new String[attributesToRetrieve.size()]));
             }
-            Response searchResults = getLocalIndex().getObjects(objectIDs.toArray(new String[objectIDs.size()]), query.build());
-            if (searchResults.getStatusCode() == 200) {
-                String jsonString = new String(searchResults.getData(), "UTF-8");
-                JSONObject json = new JSONObject(jsonString);
-                json.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_LOCAL);
-                return json;
-            }
-            else {
-                throw new AlgoliaException(searchResults.getErrorMessage(), searchResults.getStatusCode());
-            }
+            Response searchResults = localIndex.getObjects(objectIDs.toArray(new String[objectIDs.size()]), query.build());
+            JSONObject json = OfflineClient.parseSearchResults(searchResults);
+            json.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_LOCAL);
+            return json;
         }
-        catch (JSONException | UnsupportedEncodingException e) {
+        catch (JSONException e) {
             throw new AlgoliaException("Get objects failed", e);
         }
+        finally {
+            getClient().releaseReadHandle(getIndexName(), localIndex);
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -1499,20 +2231,19 @@ public class MirroredIndex extends Index
      * Search for facet values, explicitly targeting the online API, not the offline mirror.
      * Same parameters as {@link Index#searchForFacetValues(String, String, Query, CompletionHandler)}.
      */
-    public Request searchForFacetValuesOnline(@NonNull String facetName, @NonNull String text, @Nullable Query query, @NonNull final CompletionHandler completionHandler) {
-        return super.searchForFacetValues(facetName, text, query, new CompletionHandler() {
+    public Request searchForFacetValuesOnline(final @NonNull String facetName, final @NonNull String text, @Nullable Query query, @NonNull final CompletionHandler completionHandler) {
+        final Query queryCopy = query != null ? new Query(query) : null;
+        return getClient().new AsyncTaskRequest(completionHandler) {
+            @NonNull
             @Override
-            public void requestCompleted(JSONObject content, AlgoliaException error) {
-                try {
-                    if (content != null)
-                        content.put(JSON_KEY_ORIGIN, JSON_VALUE_ORIGIN_REMOTE);
-                }
-                catch (JSONException e) {
-                    throw new RuntimeException(e); // should never happen
-                }
-                completionHandler.requestCompleted(content, error);
+            protected JSONObject run() throws AlgoliaException {
+                return searchForFacetValuesOnline(facetName, text, queryCopy);
             }
-        });
+        }.start();
+    }
+
+    private JSONObject searchForFacetValuesOnline(@NonNull String facetName, @NonNull String text, @Nullable Query query) throws AlgoliaException {
+        return tagRemoteOrigin(searchForFacetValuesSync(facetName, text, query));
     }
 
     /**
@@ -1538,36 +2269,36 @@ public class MirroredIndex extends Index
         private final Query query;
 
         public MixedFacetSearchRequest(@NonNull String facetName, @NonNull String facetQuery, @Nullable Query query, @NonNull CompletionHandler completionHandler) {
-            super(completionHandler);
+            super(RequestType.SEARCH_FOR_FACET_VALUES, completionHandler);
             this.facetName = facetName;
             this.facetQuery = facetQuery;
             this.query = query;
         }
 
         @Override
-        protected Request startOnlineRequest(CompletionHandler completionHandler) {
-            return searchForFacetValuesOnline(facetName, facetQuery, query, completionHandler);
+        protected int getRequestTimeout() {
+            return getQueryRequestTimeout(query);
+        }
+
+        @Override
+        protected JSONObject runOnline() throws AlgoliaException {
+            return searchForFacetValuesOnline(facetName, facetQuery, query);
         }
 
         @Override
-        protected Request startOfflineRequest(CompletionHandler completionHandler) {
-            return searchForFacetValuesOffline(facetName, facetQuery, query, completionHandler);
+        protected JSONObject runOffline() throws AlgoliaException {
+            return _searchForFacetValuesOffline(facetName, facetQuery, query);
         }
     }
 
     private JSONObject _searchForFacetValuesOffline(@NonNull String facetName, @NonNull String text, @Nullable Query query) throws AlgoliaException {
+        final LocalIndex localIndex = getClient().acquireReadHandle(getIndexName());
         try {
-            Response searchResults =  getLocalIndex().searchForFacetValues(facetName, text, query != null ? query.build() : null);
-            if (searchResults.getStatusCode() == 200) {
-                String jsonString = new String(searchResults.getData(), "UTF-8");
-                return new JSONObject(jsonString); // NOTE: Origin tagging performed by the SDK
-            }
-            else {
-                throw new AlgoliaException(searchResults.getErrorMessage(), searchResults.getStatusCode());
-            }
+            Response searchResults =  localIndex.searchForFacetValues(facetName, text, query != null ? query.build() : null);
+            return OfflineClient.parseSearchResults(searchResults); // NOTE: Origin tagging performed by the SDK
         }
-        catch (JSONException | UnsupportedEncodingException e) {
-            throw new AlgoliaException("Search failed", e);
+        finally {
+            getClient().releaseReadHandle(getIndexName(), localIndex);
         }
     }
 
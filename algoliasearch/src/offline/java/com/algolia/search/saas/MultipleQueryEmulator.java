@@ -31,27 +31,67 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * Emulates multiple queries from individual queries.
+ *
+ * If an executor is provided, the individual queries run in parallel on it. Results are still processed in order, so
+ * that the "stop if enough matches" strategy is honored: once a query returns enough matches, the results of the
+ * subsequent queries are discarded (and the queries cancelled if they have not started yet).
  */
 abstract class MultipleQueryEmulator {
     private final String indexName;
+    private final Executor executor;
 
     public MultipleQueryEmulator(@NonNull String indexName) {
+        this(indexName, null);
+    }
+
+    /**
+     * Create a new emulator.
+     *
+     * @param indexName Name of the index targeted by the queries.
+     * @param executor Executor on which to run the queries in parallel. If null, queries run sequentially on the
+     *                 calling thread.
+     */
+    public MultipleQueryEmulator(@NonNull String indexName, @Nullable Executor executor) {
         this.indexName = indexName;
+        this.executor = executor;
     }
 
     abstract protected JSONObject singleQuery(@NonNull Query query) throws AlgoliaException;
 
     public JSONObject multipleQueries(@NonNull List<Query> queries, @Nullable String strategy) throws AlgoliaException {
+        List<FutureTask<JSONObject>> tasks = new ArrayList<>(queries.size());
+        for (final Query query : queries) {
+            tasks.add(new FutureTask<>(new Callable<JSONObject>() {
+                @Override
+                public JSONObject call() throws Exception {
+                    return singleQuery(query);
+                }
+            }));
+        }
+        // Launch all the queries but the first one in the background; the first one is run by the calling thread.
+        if (executor != null) {
+            for (int i = 1; i < tasks.size(); ++i) {
+                executor.execute(tasks.get(i));
+            }
+        }
         try {
             JSONArray results = new JSONArray();
             boolean shouldProcess = true;
-            for (Query query: queries) {
+            for (int i = 0; i < queries.size(); ++i) {
+                Query query = queries.get(i);
+                FutureTask<JSONObject> task = tasks.get(i);
                 // Implement the "stop if enough matches" strategy.
                 if (!shouldProcess) {
+                    task.cancel(false);
                     JSONObject returnedContent = new JSONObject()
                             .put("hits", new JSONArray())
                             .put("page", 0)
@@ -66,7 +106,11 @@ abstract class MultipleQueryEmulator {
                     continue;
                 }
 
-                JSONObject returnedContent = singleQuery(query);
+                // Run the query on the calling thread if it has not been picked up by the executor yet (this is a
+                // no-op otherwise). This guarantees progress even when all the executor's threads are busy, e.g.
+                // running this very method.
+                task.run();
+                JSONObject returnedContent = getResult(task);
                 returnedContent.put("index", indexName);
                 results.put(returnedContent);
 
@@ -88,5 +132,31 @@ abstract class MultipleQueryEmulator {
             // unexpected results.
             throw new AlgoliaException("When running multiple queries", e);
         }
+        finally {
+            // Don't waste resources on queries whose results will never be used (e.g. in case of error).
+            for (FutureTask<JSONObject> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static JSONObject getResult(@NonNull FutureTask<JSONObject> task) throws AlgoliaException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AlgoliaException) {
+                throw (AlgoliaException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            } else {
+                throw new AlgoliaException("When running multiple queries", cause); // should never happen
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlgoliaException("Interrupted while running multiple queries", e);
+        }
     }
 }
@@ -24,7 +24,9 @@
 package com.algolia.search.saas;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.algolia.search.offline.core.LocalIndex;
 import com.algolia.search.offline.core.Response;
@@ -36,11 +38,21 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * An API client that adds offline features on top of the regular online API client.
@@ -57,21 +69,92 @@ public class OfflineClient extends Client
     // --------------------
     // Used by the indices to coordinate their execution.
     //
-    // NOTE: The build and search queues must be serial to prevent concurrent searches or builds on a given index, but
-    // may be distinct because building can be done in parallel with search.
+    // NOTE: The Offline Core supports concurrent read accesses on a given index, as long as each of them uses its own
+    // native handle (see `acquireReadHandle()`), and building can be done in parallel with search. Only deleting or
+    // moving an index must be exclusive with respect to any other access to the same index. Therefore, every index is
+    // guarded by a read/write lock (see `getIndexLock()`): searches, browses and builds acquire the read lock;
+    // deletions and moves acquire the write lock. A build only takes the write lock briefly once the native build is
+    // over, to publish the new generation (see `buildLocalIndex()`). Builds of a given index are serialized with each
+    // other by a separate lock.
     //
-    // NOTE: Although serialization is only strictly needed at the index level, we use global queues as a way to limit
-    // resource consumption by the SDK.
+    // NOTE: Builds are scheduled per index (see `BuildScheduler`): builds of a given index are serial, but builds of
+    // distinct indices may run in parallel. We still limit the number of concurrent builds as a way to limit resource
+    // consumption by the SDK.
 
-    /** Background queue used to build local indices. */
+    /** Maximum number of local indices being built at the same time. */
+    private static final int MAX_CONCURRENT_BUILDS = 2;
+
+    /** Scheduler used to build local indices. */
+    protected BuildScheduler buildScheduler = new BuildScheduler(Executors.newFixedThreadPool(MAX_CONCURRENT_BUILDS), MAX_CONCURRENT_BUILDS);
+
+    /**
+     * Background queue formerly used to build local indices.
+     *
+     * @deprecated Builds are now scheduled per index by {@link #buildScheduler}. This queue is no longer used by the
+     * client, and work submitted to it is **not** serialized with builds. It is only kept for compatibility with
+     * existing subclasses. (Its thread is only started if something is submitted to it.)
+     */
+    @Deprecated
     protected ExecutorService localBuildExecutorService = Executors.newSingleThreadExecutor();
 
-    /** Background queue used to search local indices. */
-    protected ExecutorService localSearchExecutorService = Executors.newSingleThreadExecutor();
+    /** Maximum number of threads used to search local indices. */
+    private static final int MAX_LOCAL_SEARCH_THREADS = 4;
+
+    /**
+     * Background pool used to search local indices.
+     * Bounded by the number of available processors, since local searches are CPU-bound.
+     */
+    protected ExecutorService localSearchExecutorService = Executors.newFixedThreadPool(Math.max(2, Math.min(MAX_LOCAL_SEARCH_THREADS, Runtime.getRuntime().availableProcessors())));
 
     /** Background queue used to run transaction bodies (but not the build). */
     protected ExecutorService transactionExecutorService = Executors.newSingleThreadExecutor();
 
+    /** Maximum number of threads used to serialize transaction objects. */
+    private static final int MAX_SERIALIZATION_THREADS = 4;
+
+    /**
+     * Background pool used to serialize large batches of transaction objects to temporary files.
+     * Bounded by the number of available processors, since serialization is CPU-bound.
+     */
+    protected ExecutorService serializationExecutorService = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_SERIALIZATION_THREADS, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Scheduler used to coordinate mixed online/offline requests (e.g. to start the offline fallback on time).
+     * Coordination tasks are short; they must never block.
+     */
+    protected ScheduledExecutorService coordinationExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Shared state of a local index.
+     * There is one such entry per index name, shared by all {@link MirroredIndex} and {@link OfflineIndex} instances
+     * with that name.
+     */
+    private static class LocalIndexEntry {
+        /** Read/write lock guarding access to the index. See {@link #getIndexLock(String)}. */
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /** Lock serializing builds of the index. See {@link #buildLocalIndex}. */
+        final Lock buildLock = new ReentrantLock();
+
+        /** Native handle used to build the index. Lazily instantiated. */
+        LocalIndex localIndex;
+
+        /**
+         * Idle native handles available for read accesses. See {@link #acquireReadHandle(String)}. Guarded by the
+         * entry's monitor.
+         */
+        final Deque<LocalIndex> readHandles = new ArrayDeque<>();
+
+        /** Generation of the index. See {@link #getIndexGeneration(String)}. Guarded by the entry's monitor. */
+        long generation = 0;
+
+        /** Whether the index exists on disk, or `null` if unknown. Guarded by the entry's monitor. */
+        Boolean exists;
+    }
+
+    /** Registry of local indices, by index name. */
+    private final Map<String, LocalIndexEntry> localIndices = new HashMap<>();
+
     /**
      * Construct a new offline-enabled API client.
      *
@@ -243,6 +326,320 @@ public class OfflineClient extends Client
         return new File(getAppDir(), name);
     }
 
+    /**
+     * Get the lock guarding access to the local index with a specified name.
+     * Read accesses (search, browse, etc.) must hold the read lock; deletion and moves must hold the write lock.
+     * Builds must go through {@link #buildLocalIndex}, which only holds the write lock to commit.
+     *
+     * **Note:** The lock is shared by all {@link MirroredIndex} and {@link OfflineIndex} instances with that name.
+     *
+     * @param name The index's name.
+     * @return The lock for that index.
+     */
+    protected @NonNull ReadWriteLock getIndexLock(@NonNull String name) {
+        return getLocalIndexEntry(name).lock;
+    }
+
+    /**
+     * Get the native handle used to build the local index with a specified name.
+     *
+     * **Note:** The handle is shared by all {@link MirroredIndex} and {@link OfflineIndex} instances with that name.
+     * It is reserved for builds (see {@link #buildLocalIndex}); read accesses must use their own handle (see
+     * {@link #acquireReadHandle(String)}).
+     *
+     * @param name The index's name.
+     * @return The native handle for that index.
+     */
+    protected @NonNull LocalIndex getLocalIndex(@NonNull String name) {
+        LocalIndexEntry entry = getLocalIndexEntry(name);
+        synchronized (entry) {
+            if (entry.localIndex == null) {
+                entry.localIndex = new LocalIndex(getRootDataDir().getAbsolutePath(), getApplicationID(), name);
+            }
+            return entry.localIndex;
+        }
+    }
+
+    /**
+     * Start a read access to the local index with a specified name: acquire the index's read lock, and borrow a native
+     * handle to it. The access must be ended by {@link #releaseReadHandle(String, LocalIndex)}.
+     *
+     * Concurrent calls on a given native handle are not supported by the Offline Core, so every reader gets its own
+     * handle. Idle handles are pooled, and discarded whenever the index is modified, so that readers never see a
+     * stale view of the index.
+     *
+     * @param name The index's name.
+     * @return A native handle for that index, for the exclusive use of the caller.
+     */
+    protected @NonNull LocalIndex acquireReadHandle(@NonNull String name) {
+        final LocalIndexEntry entry = getLocalIndexEntry(name);
+        entry.lock.readLock().lock();
+        synchronized (entry) {
+            final LocalIndex handle = entry.readHandles.pollFirst();
+            if (handle != null) {
+                return handle;
+            }
+        }
+        return new LocalIndex(getRootDataDir().getAbsolutePath(), getApplicationID(), name);
+    }
+
+    /**
+     * End a read access started by {@link #acquireReadHandle(String)}: give the handle back, and release the index's
+     * read lock.
+     *
+     * @param name The index's name.
+     * @param handle The handle returned by {@link #acquireReadHandle(String)}.
+     */
+    protected void releaseReadHandle(@NonNull String name, @NonNull LocalIndex handle) {
+        final LocalIndexEntry entry = getLocalIndexEntry(name);
+        // NOTE: A build may have run in the meantime, since builds only hold the read lock. The handle can still be
+        // pooled: the build publishes its result under the write lock, hence after we release the read lock, and
+        // publishing clears the pool (see `incrementIndexGeneration()`).
+        synchronized (entry) {
+            entry.readHandles.addFirst(handle);
+        }
+        entry.lock.readLock().unlock();
+    }
+
+    private @NonNull LocalIndexEntry getLocalIndexEntry(@NonNull String name) {
+        synchronized (localIndices) {
+            LocalIndexEntry entry = localIndices.get(name);
+            if (entry == null) {
+                entry = new LocalIndexEntry();
+                localIndices.put(name, entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Build the local index with a specified name.
+     *
+     * Builds of a given index are serialized with each other. The native build holds the index's read lock, so that
+     * searches may run in parallel with it, but deletions and moves may not. The write lock is only held briefly
+     * before and after the native build, to update the stamp of imported resources and publish the new generation of
+     * the index: this waits for in-flight reads to complete, but does not block new ones for longer than it takes to
+     * write a small file.
+     *
+     * @param name The index's name.
+     * @param settingsFile Absolute path to the settings file, or `null` to keep the current settings.
+     * @param objectFiles Absolute paths to the object files.
+     * @param clearIndex Whether to clear the index prior to importing the objects.
+     * @param deletedObjectIDs IDs of the objects to delete, or `null` if none.
+     * @param importedResources Stamp of the raw resources the objects were imported from, or `null` if they do not
+     *                          come from resources. It is recorded along with the build's commit.
+     * @return The response from the Offline Core.
+     */
+    protected @NonNull Response buildLocalIndex(@NonNull String name, @Nullable String settingsFile, @NonNull String[] objectFiles, boolean clearIndex, @Nullable String[] deletedObjectIDs, @Nullable RawResources.Stamp importedResources) {
+        final LocalIndexEntry entry = getLocalIndexEntry(name);
+        entry.buildLock.lock();
+        try {
+            final Response result;
+            final Lock readLock = entry.lock.readLock();
+            final Lock writeLock = entry.lock.writeLock();
+            // The index's content will no longer match any previously imported resources.
+            writeLock.lock();
+            try {
+                RawResources.setImported(getIndexDir(name), null);
+            } finally {
+                writeLock.unlock();
+            }
+            readLock.lock();
+            try {
+                result = getLocalIndex(name).build(settingsFile, objectFiles, clearIndex, deletedObjectIDs);
+            } finally {
+                readLock.unlock();
+            }
+            writeLock.lock();
+            try {
+                if (importedResources != null && result.getStatusCode() == 200) {
+                    RawResources.setImported(getIndexDir(name), importedResources);
+                }
+                incrementIndexGeneration(name);
+            } finally {
+                writeLock.unlock();
+            }
+            return result;
+        } finally {
+            entry.buildLock.unlock();
+        }
+    }
+
+    /**
+     * Check whether some raw resources need to be imported into the local index with a specified name.
+     *
+     * The import can be skipped if the index's current content was imported from identical resources. To keep this
+     * check cheap, the checksum of the resources (which requires reading all of them) is only computed when their
+     * fingerprint has changed since the last import.
+     *
+     * @param name The index's name.
+     * @param resources A {@link Resources} instance to read resources from.
+     * @param settingsResId Resource identifier of the index settings.
+     * @param objectsResIds Resource identifiers of the objects files.
+     * @return The stamp to record once the resources are imported, or `null` if the import can be skipped.
+     * @throws AlgoliaException if the resources cannot be read.
+     */
+    protected @Nullable RawResources.Stamp getResourcesToImport(@NonNull String name, @NonNull Resources resources, int settingsResId, @NonNull int[] objectsResIds) throws AlgoliaException {
+        final File indexDir = getIndexDir(name);
+        final RawResources.Stamp imported = hasOfflineData(name) ? RawResources.getImported(indexDir) : null;
+        final RawResources.Stamp stamp;
+        try {
+            final String fingerprint = RawResources.fingerprint(context, resources, settingsResId, objectsResIds);
+            if (imported != null && imported.fingerprint.equals(fingerprint)) {
+                return null;
+            }
+            stamp = new RawResources.Stamp(RawResources.checksum(resources, settingsResId, objectsResIds), fingerprint);
+        } catch (IOException e) {
+            throw new AlgoliaException("Failed to read build resources", e);
+        }
+        if (imported != null && imported.checksum.equals(stamp.checksum)) {
+            // Same content, but the fingerprint has changed (e.g. after an application update): record the new one,
+            // so that the next check is cheap again.
+            final Lock writeLock = getIndexLock(name).writeLock();
+            writeLock.lock();
+            try {
+                RawResources.setImported(indexDir, stamp);
+            } finally {
+                writeLock.unlock();
+            }
+            return null;
+        }
+        return stamp;
+    }
+
+    /**
+     * Get the generation of the local index with a specified name.
+     * The generation is incremented every time the index is modified (built, deleted or moved). It can be used to
+     * invalidate data derived from the index's content, like cached search results.
+     *
+     * **Note:** The generation is tracked in memory only, and only accounts for modifications made through this
+     * client.
+     *
+     * @param name The index's name.
+     * @return The index's current generation.
+     */
+    protected long getIndexGeneration(@NonNull String name) {
+        LocalIndexEntry entry = getLocalIndexEntry(name);
+        synchronized (entry) {
+            return entry.generation;
+        }
+    }
+
+    /**
+     * Signal that the local index with a specified name has been modified.
+     * Should be called while holding the index's write lock.
+     *
+     * @param name The index's name.
+     */
+    protected void incrementIndexGeneration(@NonNull String name) {
+        LocalIndexEntry entry = getLocalIndexEntry(name);
+        synchronized (entry) {
+            entry.generation += 1;
+            // The index may have been created or deleted.
+            entry.exists = null;
+            // Idle handles may have cached a view of the previous content.
+            entry.readHandles.clear();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Build scheduling
+    // ----------------------------------------------------------------------
+
+    /**
+     * Statistics about the scheduling of local builds.
+     * This is a snapshot: it is not updated after it has been retrieved.
+     */
+    public static class BuildStats
+    {
+        protected int pendingCount;
+        protected int runningCount;
+        protected int submittedCount;
+        protected int coalescedCount;
+        protected int cancelledCount;
+        protected int completedCount;
+        protected long totalWaitTime;
+        protected long maxWaitTime;
+
+        /** Number of builds waiting to be executed (queue depth). */
+        public int getPendingCount()
+        {
+            return pendingCount;
+        }
+
+        /** Number of builds currently executing. */
+        public int getRunningCount()
+        {
+            return runningCount;
+        }
+
+        /** Number of builds submitted so far (excluding coalesced ones). */
+        public int getSubmittedCount()
+        {
+            return submittedCount;
+        }
+
+        /** Number of build requests that were coalesced with an already pending build. */
+        public int getCoalescedCount()
+        {
+            return coalescedCount;
+        }
+
+        /** Number of pending builds that were cancelled before they started. */
+        public int getCancelledCount()
+        {
+            return cancelledCount;
+        }
+
+        /** Number of builds that have completed (successfully or not). */
+        public int getCompletedCount()
+        {
+            return completedCount;
+        }
+
+        /** Average time spent by a build in the queue before it started (in milliseconds). */
+        public long getAverageWaitTime()
+        {
+            int startedCount = completedCount + runningCount;
+            return startedCount == 0 ? 0 : totalWaitTime / startedCount;
+        }
+
+        /** Maximum time spent by a build in the queue before it started (in milliseconds). */
+        public long getMaxWaitTime()
+        {
+            return maxWaitTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{pending: %d, running: %d, submitted: %d, coalesced: %d, cancelled: %d, completed: %d, avgWait: %d, maxWait: %d}", this.getClass().getSimpleName(), pendingCount, runningCount, submittedCount, coalescedCount, cancelledCount, completedCount, getAverageWaitTime(), maxWaitTime);
+        }
+    }
+
+    /**
+     * Get statistics about the scheduling of local builds (syncs, transaction commits, manual builds...).
+     *
+     * @return A snapshot of the build statistics.
+     */
+    public @NonNull BuildStats getBuildStats() {
+        return buildScheduler.getStats();
+    }
+
+    /**
+     * Cancel the pending background builds of an index.
+     * Only builds that have not started yet and have been triggered in the background (i.e. syncs) are cancelled.
+     * Builds explicitly requested by the user (transaction commits, manual builds) are never cancelled.
+     *
+     * **Note:** This applies both to {@link MirroredIndex} and {@link OfflineIndex} instances.
+     *
+     * @param name The index's name.
+     * @return The number of cancelled builds.
+     */
+    public int cancelPendingBuilds(@NonNull String name) {
+        return buildScheduler.cancelPending(name);
+    }
+
     // ----------------------------------------------------------------------
     // Operations
     // ----------------------------------------------------------------------
@@ -252,14 +649,43 @@ public class OfflineClient extends Client
      *
      * **Note:** This applies both to {@link MirroredIndex} and {@link OfflineIndex} instances.
      *
+     * **Note:** The result is cached until the index is modified through this client, so that this method is cheap
+     * enough to be called on every request.
+     *
      * **Warning:** This method is synchronous!
      *
      * @param name The index's name.
      * @return `true` if data exists on disk for this index, `false` otherwise.
      */
     public boolean hasOfflineData(@NonNull String name) {
-        // TODO: Suboptimal; we should be able to test existence without instantiating a `LocalIndex`.
-        return new LocalIndex(getRootDataDir().getAbsolutePath(), getApplicationID(), name).exists();
+        LocalIndexEntry entry = getLocalIndexEntry(name);
+        final long generation;
+        synchronized (entry) {
+            if (entry.exists != null) {
+                return entry.exists;
+            }
+            generation = entry.generation;
+        }
+        // NOTE: Don't hold the entry's monitor during the native call.
+        boolean exists;
+        if (!getIndexDir(name).isDirectory()) {
+            // Cheap check first: without a directory, there cannot be any data.
+            exists = false;
+        } else {
+            final LocalIndex localIndex = acquireReadHandle(name);
+            try {
+                exists = localIndex.exists();
+            } finally {
+                releaseReadHandle(name, localIndex);
+            }
+        }
+        synchronized (entry) {
+            // Don't cache a result that may have been invalidated by a concurrent modification.
+            if (entry.generation == generation) {
+                entry.exists = exists;
+            }
+        }
+        return exists;
     }
 
     /**
@@ -331,7 +757,9 @@ public class OfflineClient extends Client
      * @return A JSON object.
      */
     public Request deleteIndexOfflineAsync(final @NonNull String indexName, CompletionHandler completionHandler) {
-        return new AsyncTaskRequest(completionHandler, localBuildExecutorService) {
+        // Any pending sync of this index is now obsolete.
+        buildScheduler.cancelPending(indexName);
+        return new AsyncTaskRequest(completionHandler, buildScheduler.executorFor(BuildScheduler.Priority.USER, indexName)) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -350,12 +778,17 @@ public class OfflineClient extends Client
      * @return A JSON response.
      */
     private JSONObject deleteIndexOfflineSync(final @NonNull String indexName) throws AlgoliaException {
+        final Lock lock = getIndexLock(indexName).writeLock();
+        lock.lock();
         try {
             FileUtils.deleteRecursive(getIndexDir(indexName));
+            incrementIndexGeneration(indexName);
             return new JSONObject()
                 .put("deletedAt", DateUtils.iso8601String(new Date()));
         } catch (JSONException e) {
             throw new RuntimeException(e); // should never happen
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -372,7 +805,8 @@ public class OfflineClient extends Client
      * @return A cancellable request.
      */
     public Request moveIndexOfflineAsync(final @NonNull String srcIndexName, final @NonNull String dstIndexName, CompletionHandler completionHandler) {
-        return new AsyncTaskRequest(completionHandler, localBuildExecutorService) {
+        // The move affects both indices: serialize it with the builds of either of them.
+        return new AsyncTaskRequest(completionHandler, buildScheduler.executorFor(BuildScheduler.Priority.USER, srcIndexName, dstIndexName)) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -393,6 +827,12 @@ public class OfflineClient extends Client
      * @return A JSON response.
      */
     private JSONObject moveIndexOfflineSync(final @NonNull String srcIndexName, final @NonNull String dstIndexName) throws AlgoliaException {
+        // Always lock both indices in the same order, to avoid deadlocks with a concurrent move in the other direction.
+        final boolean srcFirst = srcIndexName.compareTo(dstIndexName) <= 0;
+        final Lock firstLock = getIndexLock(srcFirst ? srcIndexName : dstIndexName).writeLock();
+        final Lock secondLock = getIndexLock(srcFirst ? dstIndexName : srcIndexName).writeLock();
+        firstLock.lock();
+        secondLock.lock();
         try {
             final File srcDir = getIndexDir(srcIndexName);
             final File dstDir = getIndexDir(dstIndexName);
@@ -400,6 +840,8 @@ public class OfflineClient extends Client
                 FileUtils.deleteRecursive(dstDir);
             }
             if (srcDir.renameTo(dstDir)) {
+                incrementIndexGeneration(srcIndexName);
+                incrementIndexGeneration(dstIndexName);
                 return new JSONObject()
                     .put("updatedAt", DateUtils.iso8601String(new Date()));
             } else {
@@ -407,6 +849,9 @@ public class OfflineClient extends Client
             }
         } catch (JSONException e) {
             throw new RuntimeException(e); // should never happen
+        } finally {
+            secondLock.unlock();
+            firstLock.unlock();
         }
     }
 
@@ -416,22 +861,46 @@ public class OfflineClient extends Client
     // Utils
     // ----------------------------------------------------------------------
 
-    static protected JSONObject parseSearchResults(Response searchResults) throws AlgoliaException {
+    /** Encoding of the data returned by the Offline Core. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Check the outcome of a call to the Offline Core and return its raw data.
+     * The data is returned as is, without any copy or parsing. This lets callers that don't need a JSON tree (e.g. a
+     * cache, or a build whose output is discarded) avoid the cost of parsing.
+     *
+     * @param response The response from the Offline Core.
+     * @return The response's data, as UTF-8 encoded JSON. May be null when the call has no output (e.g. a build).
+     * @throws AlgoliaException if the call failed.
+     */
+    static protected @Nullable byte[] getResponseData(@NonNull Response response) throws AlgoliaException {
+        if (response.getStatusCode() == 200) {
+            return response.getData();
+        } else {
+            throw new AlgoliaException(response.getErrorMessage(), response.getStatusCode());
+        }
+    }
+
+    /**
+     * Parse raw data returned by the Offline Core.
+     *
+     * @param data UTF-8 encoded JSON, as returned by {@link #getResponseData(Response)}. May be null.
+     * @return The parsed JSON object. Empty if `data` is null.
+     * @throws AlgoliaException if the data is not valid JSON.
+     */
+    static protected @NonNull JSONObject parseResponseData(@Nullable byte[] data) throws AlgoliaException {
+        if (data == null) { // may happen when building: no output
+            return new JSONObject();
+        }
         try {
-            if (searchResults.getStatusCode() == 200) {
-                if (searchResults.getData() != null) {
-                    String jsonString = new String(searchResults.getData(), "UTF-8");
-                    return new JSONObject(jsonString);
-                } else { // may happen when building: no output
-                    return new JSONObject();
-                }
-            }
-            else {
-                throw new AlgoliaException(searchResults.getErrorMessage(), searchResults.getStatusCode());
-            }
+            return new JSONObject(new String(data, UTF_8));
         }
-        catch (JSONException | UnsupportedEncodingException e) {
+        catch (JSONException e) {
             throw new AlgoliaException("Offline Core returned invalid JSON", e);
         }
     }
+
+    static protected JSONObject parseSearchResults(Response searchResults) throws AlgoliaException {
+        return parseResponseData(getResponseData(searchResults));
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the outcome of mixed online/offline requests of a given type, as well as recent online latencies.
+ *
+ * Latencies are kept in a fixed-size ring buffer, so that percentiles reflect the current network conditions.
+ *
+ * **Note:** This class is thread-safe.
+ */
+class OfflineFallbackTracker
+{
+    /** Outcome of a mixed online/offline request. */
+    enum Outcome {
+        /** The online results were used. */
+        ONLINE,
+        /** The offline results were used. */
+        OFFLINE,
+        /** The request failed. */
+        FAILURE
+    }
+
+    /** Most recent latency samples (ring buffer). */
+    private final long[] samples;
+
+    /** Number of valid samples in `samples`. */
+    private int sampleCount = 0;
+
+    /** Index where the next sample will be written in `samples`. */
+    private int nextSampleIndex = 0;
+
+    private int onlineCount;
+    private int offlineCount;
+    private int failureCount;
+
+    /**
+     * Construct a new tracker.
+     *
+     * @param capacity Maximum number of latency samples to keep.
+     */
+    public OfflineFallbackTracker(int capacity)
+    {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Record the latency of an online request.
+     *
+     * @param latency The latency, in milliseconds. May be a lower bound of the actual latency (in case the request
+     *                was abandoned).
+     */
+    public synchronized void recordLatency(long latency)
+    {
+        samples[nextSampleIndex] = latency;
+        nextSampleIndex = (nextSampleIndex + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    /**
+     * Record the outcome of a request.
+     *
+     * @param outcome The outcome.
+     */
+    public synchronized void recordOutcome(@NonNull Outcome outcome)
+    {
+        switch (outcome) {
+            case ONLINE: onlineCount += 1; break;
+            case OFFLINE: offlineCount += 1; break;
+            case FAILURE: failureCount += 1; break;
+        }
+    }
+
+    /**
+     * Get the number of latency samples currently held.
+     *
+     * @return The number of samples.
+     */
+    public synchronized int getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    /**
+     * Compute a percentile of the recent latencies.
+     *
+     * @param percentile The percentile, between 0 and 1.
+     * @return The latency at the requested percentile (in milliseconds), or -1 if no samples are available.
+     */
+    public synchronized long getLatencyPercentile(double percentile)
+    {
+        if (sampleCount == 0) {
+            return -1;
+        }
+        long[] sortedSamples = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sortedSamples);
+        int index = (int)Math.ceil(percentile * sampleCount) - 1;
+        return sortedSamples[Math.max(0, Math.min(sampleCount - 1, index))];
+    }
+
+    /**
+     * Get a snapshot of this tracker's statistics.
+     *
+     * @param percentile Percentile of the latency to report, between 0 and 1.
+     * @return The current statistics.
+     */
+    public synchronized @NonNull MirroredIndex.OfflineFallbackStats getStats(double percentile)
+    {
+        MirroredIndex.OfflineFallbackStats stats = new MirroredIndex.OfflineFallbackStats();
+        stats.onlineCount = onlineCount;
+        stats.offlineCount = offlineCount;
+        stats.failureCount = failureCount;
+        stats.latencySampleCount = sampleCount;
+        stats.onlineLatency = getLatencyPercentile(percentile);
+        return stats;
+    }
+}
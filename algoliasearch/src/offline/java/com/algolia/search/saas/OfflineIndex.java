@@ -46,11 +46,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 
@@ -69,6 +75,9 @@ import java.util.UUID;
  *
  * Read operations behave identically as with online indices.
  *
+ * Reads are executed on a bounded background pool, and may run concurrently with each other. They are only blocked
+ * while the index is being built (either by a transaction commit or by a manual build).
+ *
  *
  * ## Writing
  *
@@ -104,7 +113,7 @@ import java.util.UUID;
  * transaction results in an index rebuild. Multiplying transactions therefore only degrades performance.
  *
  * Also, transactions are serially executed in the order they were committed, the latest transaction potentially
- * overwriting the previous transactions' result.
+ * overwriting the previous transactions' result. Builds of distinct indices, however, may run in parallel.
  *
  * ### Manual build
  *
@@ -147,12 +156,31 @@ public class OfflineIndex {
     /** This index's name. */
     private final String name;
 
-    /** Local index backing this offline index. */
-    private final LocalIndex localIndex;
-
     /** Serial number for transactions. */
     private int transactionSeqNo = 0;
 
+    /** Cache for search results. Null when disabled. */
+    private volatile OfflineSearchCache searchCache;
+
+    /** Size of the in-memory buffer of transactions, in bytes. See {@link #setSpillBufferSize(int)}. */
+    private int spillBufferSize = DEFAULT_SPILL_BUFFER_SIZE;
+
+    /** Maximum size of the temporary files written by transactions. See {@link #setMaxSpillFileSize(long)}. */
+    private long maxSpillFileSize = DEFAULT_MAX_SPILL_FILE_SIZE;
+
+    // ----------------------------------------------------------------------
+    // Constants
+    // ----------------------------------------------------------------------
+
+    /** Default size of the in-memory buffer of transactions (in bytes). */
+    public static final int DEFAULT_SPILL_BUFFER_SIZE = 64 * 1024; // 64 kB
+
+    /** Default maximum size of the temporary files written by transactions (in bytes). */
+    public static final long DEFAULT_MAX_SPILL_FILE_SIZE = 8 * 1024 * 1024; // 8 MB
+
+    /** Number of objects above which a batch saved to a transaction is serialized in parallel, by chunks. */
+    private static final int SERIALIZATION_CHUNK_SIZE = 1000;
+
     // ----------------------------------------------------------------------
     // Initialization
     // ----------------------------------------------------------------------
@@ -166,7 +194,6 @@ public class OfflineIndex {
     protected OfflineIndex(@NonNull OfflineClient client, @NonNull String name) {
         this.client = client;
         this.name = name;
-        this.localIndex = new LocalIndex(getClient().getRootDataDir().getAbsolutePath(), getClient().getApplicationID(), name);
     }
 
     // ----------------------------------------------------------------------
@@ -198,6 +225,56 @@ public class OfflineIndex {
         return client;
     }
 
+    /**
+     * Get the size of the in-memory buffer used by write transactions.
+     *
+     * @return The buffer size, in bytes.
+     */
+    public int getSpillBufferSize() {
+        return spillBufferSize;
+    }
+
+    /**
+     * Set the size of the in-memory buffer used by write transactions.
+     * Objects added to a transaction are serialized as they come, and accumulate in memory until this threshold is
+     * reached; they are then flushed to a temporary file on disk.
+     *
+     * **Note:** Only applies to transactions created after this call.
+     *
+     * @param spillBufferSize The buffer size, in bytes.
+     */
+    public void setSpillBufferSize(int spillBufferSize) {
+        if (spillBufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be strictly positive");
+        }
+        this.spillBufferSize = spillBufferSize;
+    }
+
+    /**
+     * Get the maximum size of the temporary files written by write transactions.
+     *
+     * @return The maximum file size, in bytes.
+     */
+    public long getMaxSpillFileSize() {
+        return maxSpillFileSize;
+    }
+
+    /**
+     * Set the maximum size of the temporary files written by write transactions.
+     * When a file exceeds this size, it is closed and a new one is started. (The limit is approximate: a file may
+     * slightly exceed it.)
+     *
+     * **Note:** Only applies to transactions created after this call.
+     *
+     * @param maxSpillFileSize The maximum file size, in bytes.
+     */
+    public void setMaxSpillFileSize(long maxSpillFileSize) {
+        if (maxSpillFileSize <= 0) {
+            throw new IllegalArgumentException("File size must be strictly positive");
+        }
+        this.maxSpillFileSize = maxSpillFileSize;
+    }
+
     // ----------------------------------------------------------------------
     // Read operations
     // ----------------------------------------------------------------------
@@ -211,7 +288,7 @@ public class OfflineIndex {
      */
     public Request searchAsync(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
         final Query queryCopy = new Query(query);
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -220,13 +297,64 @@ public class OfflineIndex {
         }.start();
     }
 
+    /**
+     * Search inside this index (asynchronously), delivering the raw results.
+     * The results are the UTF-8 encoded JSON returned by the Offline Core, without any parsing. Use this method when
+     * you don't need a JSON tree, to spare the cost of building one.
+     *
+     * @param query Search parameters.
+     * @param completionHandler The listener that will be notified of the request's outcome.
+     * @return A cancellable request.
+     */
+    public Request searchRawAsync(@NonNull Query query, @NonNull RawCompletionHandler completionHandler) {
+        final Query queryCopy = new Query(query);
+        return getClient().new AsyncRawTaskRequest(completionHandler, getClient().localSearchExecutorService) {
+            @NonNull
+            @Override
+            protected byte[] runRaw() throws AlgoliaException {
+                return searchSyncRaw(queryCopy);
+            }
+        }.start();
+    }
+
     /**
      * Search inside this index (synchronously).
      *
      * @return Search results.
      */
     private JSONObject searchSync(@NonNull Query query) throws AlgoliaException {
-        return OfflineClient.parseSearchResults(localIndex.search(query.build()));
+        return OfflineClient.parseResponseData(searchSyncRaw(query));
+    }
+
+    /**
+     * Search inside this index (synchronously), returning the raw results.
+     * The results are the UTF-8 encoded JSON returned by the Offline Core, without any copy or parsing.
+     *
+     * @param query Search parameters.
+     * @return Search results, as UTF-8 encoded JSON.
+     * @throws AlgoliaException if the search failed.
+     */
+    protected byte[] searchSyncRaw(@NonNull Query query) throws AlgoliaException {
+        final OfflineSearchCache cache = searchCache;
+        final String queryString = query.build();
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            // NOTE: The generation must be read while holding the lock, so that it matches the index's content.
+            final long generation = getClient().getIndexGeneration(name);
+            if (cache != null) {
+                byte[] cachedResults = cache.get(queryString, generation);
+                if (cachedResults != null) {
+                    return cachedResults;
+                }
+            }
+            byte[] results = OfflineClient.getResponseData(localIndex.search(queryString));
+            if (cache != null && results != null) {
+                cache.put(queryString, results, generation);
+            }
+            return results;
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
     }
 
     /**
@@ -241,7 +369,7 @@ public class OfflineIndex {
      */
     public Request multipleQueriesAsync(final @NonNull List<Query> queries, @Nullable final Client.MultipleQueriesStrategy strategy, @NonNull CompletionHandler completionHandler) {
         final List<Query> queriesCopy = new ArrayList<>(queries);
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -251,7 +379,7 @@ public class OfflineIndex {
     }
 
     private JSONObject multipleQueriesSync(final @NonNull List<Query> queries, @Nullable final Client.MultipleQueriesStrategy strategy) throws AlgoliaException {
-        return new MultipleQueryEmulator(name) {
+        return new MultipleQueryEmulator(name, getClient().localSearchExecutorService) {
             @Override
             protected JSONObject singleQuery(@NonNull Query query) throws AlgoliaException {
                 return searchSync(query);
@@ -279,7 +407,7 @@ public class OfflineIndex {
      * @return A cancellable request.
      */
     public Request getObjectAsync(final @NonNull String objectID, final List<String> attributesToRetrieve, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -307,7 +435,7 @@ public class OfflineIndex {
      * @return A cancellable request.
      */
     public Request getObjectsAsync(final @NonNull List<String> objectIDs, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -319,7 +447,12 @@ public class OfflineIndex {
     private JSONObject getObjectsSync(@NonNull List<String> objectIDs, List<String> attributesToRetrieve) throws AlgoliaException {
         final String[] objectIDsAsArray = objectIDs.toArray(new String[objectIDs.size()]);
         final String queryParameters = attributesToRetrieve == null ? null : new Query().setAttributesToRetrieve(attributesToRetrieve.toArray(new String[attributesToRetrieve.size()])).build();
-        return OfflineClient.parseSearchResults(localIndex.getObjects(objectIDsAsArray, queryParameters));
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            return OfflineClient.parseSearchResults(localIndex.getObjects(objectIDsAsArray, queryParameters));
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
     }
 
     /**
@@ -329,7 +462,7 @@ public class OfflineIndex {
      * @return A cancellable request.
      */
     public Request getSettingsAsync(@NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -339,7 +472,12 @@ public class OfflineIndex {
     }
 
     private JSONObject getSettingsSync() throws AlgoliaException {
-        return OfflineClient.parseSearchResults(localIndex.getSettings());
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            return OfflineClient.parseSearchResults(localIndex.getSettings());
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
     }
 
     /**
@@ -354,7 +492,7 @@ public class OfflineIndex {
      */
     public Request browseAsync(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
         final Query queryCopy = new Query(query);
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -364,7 +502,12 @@ public class OfflineIndex {
     }
 
     private JSONObject browseSync(@NonNull Query query) throws AlgoliaException {
-        return OfflineClient.parseSearchResults(localIndex.browse(query.build()));
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            return OfflineClient.parseSearchResults(localIndex.browse(query.build()));
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
     }
 
     /**
@@ -377,7 +520,7 @@ public class OfflineIndex {
      * @return A cancellable request.
      */
     public Request browseFromAsync(final @NonNull String cursor, @NonNull CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -388,7 +531,12 @@ public class OfflineIndex {
 
     private JSONObject browseFromSync(@NonNull String cursor) throws AlgoliaException {
         final Query query = new Query().set("cursor", cursor);
-        return OfflineClient.parseSearchResults(localIndex.browse(query.build()));
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            return OfflineClient.parseSearchResults(localIndex.browse(query.build()));
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
     }
 
     /**
@@ -397,7 +545,7 @@ public class OfflineIndex {
      */
     public Request searchForFacetValuesAsync(final @NonNull String facetName, final @NonNull String facetQuery, @Nullable Query query, @NonNull CompletionHandler completionHandler) {
         final Query queryCopy = query != null ? new Query(query) : null;
-        return getClient().new AsyncTaskRequest(completionHandler) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().localSearchExecutorService) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -410,7 +558,54 @@ public class OfflineIndex {
      * Search for facet values (synchronously).
      */
     private JSONObject searchForFacetValuesSync(@NonNull String facetName, @NonNull String facetQuery, @Nullable Query query) throws AlgoliaException {
-        return OfflineClient.parseSearchResults(localIndex.searchForFacetValues(facetName, facetQuery, query != null ? query.build() : null));
+        final LocalIndex localIndex = getClient().acquireReadHandle(name);
+        try {
+            return OfflineClient.parseSearchResults(localIndex.searchForFacetValues(facetName, facetQuery, query != null ? query.build() : null));
+        } finally {
+            getClient().releaseReadHandle(name, localIndex);
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Search cache
+    // ----------------------------------------------------------------------
+
+    /**
+     * Enable the search cache with default parameters.
+     *
+     * @see #enableSearchCache(int)
+     */
+    public void enableSearchCache() {
+        enableSearchCache(OfflineSearchCache.defaultMaxSize);
+    }
+
+    /**
+     * Enable the search cache with custom parameters.
+     * Search results are kept in memory, so that repeating a search does not hit the local index again. Cached
+     * results never expire, but are automatically invalidated whenever the index is modified (transaction commit or
+     * manual build).
+     *
+     * @param maxRequests Maximum number of requests to keep before removing the least recently used.
+     */
+    public void enableSearchCache(int maxRequests) {
+        searchCache = new OfflineSearchCache(maxRequests);
+    }
+
+    /**
+     * Disable and reset the search cache.
+     */
+    public void disableSearchCache() {
+        searchCache = null;
+    }
+
+    /**
+     * Remove all entries from the search cache.
+     */
+    public void clearSearchCache() {
+        final OfflineSearchCache cache = searchCache;
+        if (cache != null) {
+            cache.reset();
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -424,9 +619,16 @@ public class OfflineIndex {
      * Its purpose is twofold:
      *
      * 1. Avoid rebuilding the index for every individual operation, which would be astonishingly costly.
-     * 2. Avoid keeping all the necessary data in memory, e.g. by flushing added objects to temporary files on disk.
+     * 2. Avoid keeping all the necessary data in memory, by streaming added objects to temporary files on disk.
      *
      * A transaction can be created by calling {@link #newTransaction()}.
+     *
+     * **Note:** A transaction may be populated by several threads at the same time. Each thread streams the objects
+     * it saves to its own temporary files, so that producers do not contend with each other. When the same object is
+     * both saved and deleted, the last operation wins: a deletion cancels previous saves, and a save cancels previous
+     * deletions. (Operations on the same object issued concurrently by different threads have no defined order.)
+     *
+     * The asynchronous variants of the populating methods still run serially, in the order they were issued.
      */
     public class WriteTransaction {
 
@@ -438,7 +640,7 @@ public class OfflineIndex {
         private int id;
 
         /** Whether this transaction has completed (committed or rolled back). */
-        private boolean finished = false;
+        private volatile boolean finished = false;
 
         /**
          * Path to the temporary file containing the new settings.
@@ -446,15 +648,33 @@ public class OfflineIndex {
          * */
         private @Nullable File settingsFile;
 
-        /** Paths to the temporary files containing the objects that will be added/updated by this transaction. */
-        private List<String> objectFilePaths = new ArrayList<>();
+        /**
+         * Segments of the objects that will be added/updated by this transaction, in the order they will be applied.
+         * Guarded by its own monitor.
+         *
+         * A producer thread keeps appending to its current segment as long as no other segment has been started
+         * since; otherwise, it starts a new one. This way, a save is always applied after any save that completed
+         * before it started, whatever the threads involved, so that the last write of an object wins.
+         */
+        private final List<Segment> segments = new ArrayList<>();
+
+        /** Current segment of each producer thread. */
+        private final ThreadLocal<Segment> currentSegment = new ThreadLocal<>();
 
         /**
          * Identifiers of objects that will be deleted by this transaction.
          *
-         * **Warning:** Deleted objects have higher precedence than added/updated objects.
+         * **Warning:** Deleted objects have higher precedence than added/updated objects. Therefore, saving an object
+         * removes its identifier from this set.
+         */
+        private final Set<String> deletedObjectIDs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        /**
+         * Guards the state of this transaction.
+         * Producers (saving or deleting objects) share the read lock, so that they can run concurrently; operations
+         * affecting the transaction as a whole (settings, clear, commit, rollback) take the write lock.
          */
-        private Set<String> deletedObjectIDs = new HashSet<>();
+        private final ReadWriteLock stagingLock = new ReentrantReadWriteLock();
 
         /** Whether the index should be cleared before executing this transaction. */
         private boolean shouldClearIndex = false;
@@ -462,15 +682,6 @@ public class OfflineIndex {
         /** Temporary directory for this transaction. */
         private final File tmpDir;
 
-        /** Temporary in-memory cache for objects. */
-        private List<JSONObject> tmpObjects = new ArrayList<>();
-
-        // Constants
-        // ---------
-
-        /** Maximum number of objects to keep in memory before flushing to disk. */
-        private int maxObjectsInMemory = 100;
-
         // Initialization
         // --------------
 
@@ -549,10 +760,13 @@ public class OfflineIndex {
          */
         public void saveObjectSync(@NonNull JSONObject object) throws AlgoliaException {
             assertNotMainThread();
-            synchronized(this) {
+            final Lock lock = stagingLock.readLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
-                tmpObjects.add(object);
-                flushObjectsToDisk(false);
+                writeObject(getSegment().writer, object);
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -587,21 +801,52 @@ public class OfflineIndex {
         /**
          * Save multiple objects (synchronously).
          *
+         * **Note:** Large batches are split into chunks, which are serialized in parallel.
+         *
          * @param objects Objects to save. Each one must contain an `objectID` attribute.
          */
-        public void saveObjectsSync(@NonNull JSONArray objects) throws AlgoliaException {
+        public void saveObjectsSync(@NonNull final JSONArray objects) throws AlgoliaException {
             assertNotMainThread();
+            final Lock lock = stagingLock.readLock();
+            lock.lock();
             try {
-                synchronized(this) {
-                    if (finished) throw new IllegalStateException();
-                    for (int i = 0; i < objects.length(); ++i) {
-                        JSONObject object = objects.getJSONObject(i);
-                        tmpObjects.add(object);
+                if (finished) throw new IllegalStateException();
+                final int chunkCount = (objects.length() + SERIALIZATION_CHUNK_SIZE - 1) / SERIALIZATION_CHUNK_SIZE;
+                if (chunkCount <= 1) {
+                    writeObjects(getSegment().writer, objects, 0, objects.length());
+                    return;
+                }
+                // Reserve one segment per chunk, so that chunks are applied in order, after any previous save.
+                final List<Segment> chunkSegments = new ArrayList<>();
+                synchronized (segments) {
+                    for (int chunk = 0; chunk < chunkCount; ++chunk) {
+                        Segment segment = new Segment(new SpillFileWriter(tmpDir, spillBufferSize, maxSpillFileSize));
+                        segments.add(segment);
+                        chunkSegments.add(segment);
                     }
-                    flushObjectsToDisk(false);
                 }
-            } catch (JSONException e) {
-                throw new AlgoliaException("Array must contain only objects", e);
+                // Serialize all chunks but the first one on the background pool.
+                List<Future<List<File>>> futures = new ArrayList<>();
+                for (int chunk = 1; chunk < chunkCount; ++chunk) {
+                    final int start = chunk * SERIALIZATION_CHUNK_SIZE;
+                    final int end = Math.min(start + SERIALIZATION_CHUNK_SIZE, objects.length());
+                    final Segment segment = chunkSegments.get(chunk);
+                    futures.add(getClient().serializationExecutorService.submit(new Callable<List<File>>() {
+                        @Override
+                        public List<File> call() throws Exception {
+                            writeChunk(segment, objects, start, end);
+                            return segment.files;
+                        }
+                    }));
+                }
+                // Serialize the first chunk on the current thread, then wait for the other ones.
+                try {
+                    writeChunk(chunkSegments.get(0), objects, 0, SERIALIZATION_CHUNK_SIZE);
+                } finally {
+                    awaitFiles(futures);
+                }
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -630,9 +875,13 @@ public class OfflineIndex {
          */
         public void deleteObjectSync(@NonNull String objectID) throws AlgoliaException {
             assertNotMainThread();
-            synchronized(this) {
+            final Lock lock = stagingLock.readLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
                 deletedObjectIDs.add(objectID);
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -667,9 +916,13 @@ public class OfflineIndex {
          */
         public void deleteObjectsSync(@NonNull Collection<String> objectIDs) throws AlgoliaException {
             assertNotMainThread();
-            synchronized(this) {
+            final Lock lock = stagingLock.readLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
                 deletedObjectIDs.addAll(objectIDs);
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -709,9 +962,13 @@ public class OfflineIndex {
          */
         public void setSettingsSync(@NonNull  JSONObject settings) throws AlgoliaException {
             assertNotMainThread();
-            synchronized(this) {
+            final Lock lock = stagingLock.writeLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
-                settingsFile = writeTmpJSONFile(settings);
+                settingsFile = writeTmpJSONFile(settings, tmpDir);
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -742,11 +999,15 @@ public class OfflineIndex {
          */
         public void clearIndexSync() throws AlgoliaException {
             assertNotMainThread();
-            synchronized(this) {
+            final Lock lock = stagingLock.writeLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
                 shouldClearIndex = true;
                 deletedObjectIDs.clear();
-                objectFilePaths.clear();
+                discardObjectWriters();
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -763,7 +1024,7 @@ public class OfflineIndex {
          * @return A cancellable operation (see warning for important caveat).
          */
         public Request commitAsync(@NonNull CompletionHandler completionHandler) {
-            return getClient().new AsyncTaskRequest(completionHandler, getClient().localBuildExecutorService) {
+            return getClient().new AsyncTaskRequest(completionHandler, getClient().buildScheduler.executorFor(BuildScheduler.Priority.USER, name)) {
                 @NonNull
                 @Override
                 protected JSONObject run() throws AlgoliaException {
@@ -782,21 +1043,34 @@ public class OfflineIndex {
         }
 
         private void doCommit() throws AlgoliaException {
-            // Serialize calls with respect to this transaction.
-            synchronized (this) {
+            // Wait for pending producers and block further ones.
+            final Lock stagingWriteLock = stagingLock.writeLock();
+            stagingWriteLock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
                 try {
-                    flushObjectsToDisk(true);
-                    Response result = OfflineIndex.this.localIndex.build(
+                    List<File> objectFiles = closeObjectWriters();
+                    String[] objectFilePaths = new String[objectFiles.size()];
+                    for (int i = 0; i < objectFiles.size(); ++i) {
+                        objectFilePaths[i] = objectFiles.get(i).getAbsolutePath();
+                    }
+                    Response result = getClient().buildLocalIndex(
+                        name,
                         settingsFile != null ? settingsFile.getAbsolutePath() : null,
-                        objectFilePaths.toArray(new String[objectFilePaths.size()]),
+                        objectFilePaths,
                         shouldClearIndex,
-                        deletedObjectIDs.toArray(new String[deletedObjectIDs.size()])
+                        deletedObjectIDs.toArray(new String[deletedObjectIDs.size()]),
+                        null /* importedResources */
                     );
-                    OfflineClient.parseSearchResults(result);
+                    // NOTE: The build's output is not used; we only check for errors.
+                    OfflineClient.getResponseData(result);
                 } finally {
+                    // Delete temporary files.
+                    FileUtils.deleteRecursive(tmpDir);
                     finished = true;
                 }
+            } finally {
+                stagingWriteLock.unlock();
             }
         }
 
@@ -830,23 +1104,176 @@ public class OfflineIndex {
         }
 
         private void doRollback() {
-            synchronized(this) {
+            final Lock lock = stagingLock.writeLock();
+            lock.lock();
+            try {
                 if (finished) throw new IllegalStateException();
+                discardObjectWriters();
                 FileUtils.deleteRecursive(tmpDir);
                 finished = true;
+            } finally {
+                lock.unlock();
             }
         }
 
         // Utils
         // -----
 
-        private void flushObjectsToDisk(boolean force) throws AlgoliaException {
-            if (force || tmpObjects.size() >= maxObjectsInMemory) {
-                File tmpFile = writeTmpJSONFile(tmpObjects);
-                objectFilePaths.add(tmpFile.getAbsolutePath());
-                tmpObjects.clear();
+        /**
+         * Get the segment the current thread should write to, starting a new one if necessary.
+         * Must be called with the read lock of `stagingLock` held.
+         */
+        private @NonNull Segment getSegment() {
+            Segment segment = currentSegment.get();
+            synchronized (segments) {
+                if (segments.isEmpty() || segments.get(segments.size() - 1) != segment) {
+                    segment = new Segment(new SpillFileWriter(tmpDir, spillBufferSize, maxSpillFileSize));
+                    segments.add(segment);
+                    currentSegment.set(segment);
+                }
+            }
+            return segment;
+        }
+
+        private void writeObjects(@NonNull SpillFileWriter writer, @NonNull JSONArray objects, int start, int end) throws AlgoliaException {
+            try {
+                for (int i = start; i < end; ++i) {
+                    writeObject(writer, objects.getJSONObject(i));
+                }
+            } catch (JSONException e) {
+                throw new AlgoliaException("Array must contain only objects", e);
+            }
+        }
+
+        private void writeObject(@NonNull SpillFileWriter writer, @NonNull JSONObject object) throws AlgoliaException {
+            try {
+                writer.write(object);
+            } catch (IOException e) {
+                throw new AlgoliaException("Could not write temporary file", e);
+            }
+            // A save cancels any previous deletion of the same object.
+            String objectID = object.optString("objectID", null);
+            if (objectID != null) {
+                deletedObjectIDs.remove(objectID);
+            }
+        }
+
+        /**
+         * Write a chunk of a large batch to its own segment, and close the segment right away, so that its buffer is
+         * released without waiting for the commit.
+         */
+        private void writeChunk(@NonNull Segment segment, @NonNull JSONArray objects, int start, int end) throws AlgoliaException {
+            final SpillFileWriter writer = segment.writer;
+            segment.writer = null;
+            try {
+                writeObjects(writer, objects, start, end);
+                segment.files = closeObjectWriter(writer);
+            } catch (AlgoliaException e) {
+                writer.discard();
+                segment.files = Collections.emptyList();
+                throw e;
             }
         }
+
+        private @NonNull List<File> closeObjectWriter(@NonNull SpillFileWriter writer) throws AlgoliaException {
+            try {
+                return writer.close();
+            } catch (IOException e) {
+                throw new AlgoliaException("Could not write temporary file", e);
+            }
+        }
+
+        /**
+         * Wait for files written in the background.
+         * All tasks are waited for, even if some of them fail.
+         *
+         * @param futures Futures of the tasks.
+         * @throws AlgoliaException if any task failed.
+         */
+        private void awaitFiles(@NonNull List<Future<List<File>>> futures) throws AlgoliaException {
+            AlgoliaException error = null;
+            for (Future<List<File>> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof AlgoliaException ? (AlgoliaException) e.getCause() : new AlgoliaException("Could not serialize objects", e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AlgoliaException("Interrupted while serializing objects", e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Close all object writers. Writers are closed in parallel, since each of them may have a buffer to flush.
+         * Must be called with the write lock of `stagingLock` held.
+         *
+         * @return The files written by all segments, in the order they must be applied.
+         */
+        private @NonNull List<File> closeObjectWriters() throws AlgoliaException {
+            List<Future<List<File>>> futures = new ArrayList<>();
+            for (final Segment segment : segments) {
+                final SpillFileWriter writer = segment.writer;
+                if (writer == null) {
+                    continue; // already closed (chunk of a large batch)
+                }
+                segment.writer = null;
+                futures.add(getClient().serializationExecutorService.submit(new Callable<List<File>>() {
+                    @Override
+                    public List<File> call() throws Exception {
+                        try {
+                            segment.files = closeObjectWriter(writer);
+                            return segment.files;
+                        } catch (AlgoliaException e) {
+                            writer.discard();
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            awaitFiles(futures);
+            List<File> files = new ArrayList<>();
+            for (Segment segment : segments) {
+                files.addAll(segment.files);
+            }
+            return files;
+        }
+
+        /**
+         * Discard all object writers.
+         * NOTE: Files of closed segments are deleted along with the transaction's temporary directory.
+         * Must be called with the write lock of `stagingLock` held.
+         */
+        private void discardObjectWriters() {
+            for (Segment segment : segments) {
+                if (segment.writer != null) {
+                    segment.writer.discard();
+                    segment.writer = null;
+                }
+            }
+            segments.clear();
+        }
+    }
+
+    /**
+     * A run of objects saved to a transaction, written to temporary files.
+     * A segment is only written to by a single producer at a time.
+     */
+    private static class Segment {
+        /** Writer for this segment's files, or `null` once closed or discarded. */
+        SpillFileWriter writer;
+
+        /** Files written by this segment, once closed. */
+        List<File> files;
+
+        Segment(@NonNull SpillFileWriter writer) {
+            this.writer = writer;
+        }
     }
 
     /**
@@ -864,7 +1291,7 @@ public class OfflineIndex {
      * @return `true` if data exists on disk for this index, `false` otherwise.
      */
     public boolean hasOfflineData() {
-        return localIndex.exists();
+        return getClient().hasOfflineData(name);
     }
 
     // ----------------------------------------------------------------------
@@ -884,7 +1311,7 @@ public class OfflineIndex {
      * being called.
      */
     public Request buildFromFiles(@NonNull final File settingsFile, @NonNull final File[] objectFiles, @Nullable CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler, getClient().localBuildExecutorService) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().buildScheduler.executorFor(BuildScheduler.Priority.USER, name)) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -900,6 +1327,9 @@ public class OfflineIndex {
     /**
      * Build the index from local data stored in raw resources.
      *
+     * The build is skipped if the index's current content was built from identical resources, which makes it cheap
+     * to call this method on every launch.
+     *
      * @param resources A {@link Resources} instance to read resources from.
      * @param settingsResId Resource identifier of the index settings, in JSON format.
      * @param objectsResIds Resource identifiers of the various objects files. Each file must contain an array of
@@ -911,7 +1341,7 @@ public class OfflineIndex {
      * being called.
      */
     public Request buildFromRawResources(@NonNull final Resources resources, @NonNull final int settingsResId, @NonNull final int[] objectsResIds, @Nullable CompletionHandler completionHandler) {
-        return getClient().new AsyncTaskRequest(completionHandler, getClient().localBuildExecutorService) {
+        return getClient().new AsyncTaskRequest(completionHandler, getClient().buildScheduler.executorFor(BuildScheduler.Priority.USER, name)) {
             @NonNull
             @Override
             protected JSONObject run() throws AlgoliaException {
@@ -925,21 +1355,27 @@ public class OfflineIndex {
     }
 
     private JSONObject _buildFromRawResources(@NonNull final Resources resources, @NonNull final int settingsResId, @NonNull final int... objectsResIds) throws AlgoliaException {
+        // Skip the import if the same resources have already been imported.
+        final RawResources.Stamp stamp = getClient().getResourcesToImport(name, resources, settingsResId, objectsResIds);
+        if (stamp == null) {
+            return new JSONObject();
+        }
+
         // Save resources to independent files on disk.
         File tmpDir = new File(getClient().getTempDir(), UUID.randomUUID().toString());
         try {
             tmpDir.mkdirs();
             // Settings.
             File settingsFile = new File(tmpDir, "settings.json");
-            FileUtils.writeFile(settingsFile, resources.openRawResource(settingsResId));
+            RawResources.copy(resources, settingsResId, settingsFile);
             // Objects.
             File[] objectFiles = new File[objectsResIds.length];
             for (int i = 0; i < objectsResIds.length; ++i) {
                 objectFiles[i] = new File(tmpDir, "objects#" + Integer.toString(objectsResIds[i]) + ".json");
-                FileUtils.writeFile(objectFiles[i], resources.openRawResource(objectsResIds[i]));
+                RawResources.copy(resources, objectsResIds[i], objectFiles[i]);
             }
             // Build the index.
-            return _build(settingsFile, objectFiles);
+            return _build(stamp, settingsFile, objectFiles);
         } catch (IOException e) {
             throw new AlgoliaException("Failed to write build resources to disk", e);
         } finally {
@@ -949,12 +1385,16 @@ public class OfflineIndex {
     }
 
     private JSONObject _build(@NonNull File settingsFile, @NonNull File... objectFiles) throws AlgoliaException {
+        return _build(null, settingsFile, objectFiles);
+    }
+
+    private JSONObject _build(@Nullable RawResources.Stamp importedResources, @NonNull File settingsFile, @NonNull File... objectFiles) throws AlgoliaException {
         AlgoliaException error = null;
         String[] objectFilePaths = new String[objectFiles.length];
         for (int i = 0; i < objectFiles.length; ++i) {
             objectFilePaths[i] = objectFiles[i].getAbsolutePath();
         }
-        final Response result = localIndex.build(settingsFile.getAbsolutePath(), objectFilePaths, true /* clearIndex */, null /* deletedObjectIDs */);
+        final Response result = getClient().buildLocalIndex(name, settingsFile.getAbsolutePath(), objectFilePaths, true /* clearIndex */, null /* deletedObjectIDs */, importedResources);
         return OfflineClient.parseSearchResults(result);
     }
 
@@ -965,6 +1405,9 @@ public class OfflineIndex {
     /**
      * Perform a search with disjunctive facets, generating as many queries as number of disjunctive facets (helper).
      *
+     * If the completion handler is a {@link ProgressiveCompletionHandler}, the queries run in parallel, and results
+     * are delivered progressively (hits first, then disjunctive facet counts as they arrive).
+     *
      * @param query             The query.
      * @param disjunctiveFacets List of disjunctive facets.
      * @param refinements       The current refinements, mapping facet names to a list of values.
@@ -977,6 +1420,11 @@ public class OfflineIndex {
             protected Request multipleQueriesAsync(@NonNull List<Query> queries, @NonNull CompletionHandler completionHandler) {
                 return OfflineIndex.this.multipleQueriesAsync(queries, null, completionHandler);
             }
+
+            @Override
+            protected Request searchAsync(@NonNull Query query, @NonNull CompletionHandler completionHandler) {
+                return OfflineIndex.this.searchAsync(query, completionHandler);
+            }
         }.searchDisjunctiveFacetingAsync(query, disjunctiveFacets, refinements, completionHandler);
     }
 
@@ -1018,7 +1466,13 @@ public class OfflineIndex {
             List<String> objectIDsToDelete = new ArrayList<>();
             boolean hasMore = true;
             while (hasMore) {
-                JSONObject content = OfflineClient.parseSearchResults(localIndex.browse(queryParameters));
+                JSONObject content;
+                final LocalIndex localIndex = getClient().acquireReadHandle(name);
+                try {
+                    content = OfflineClient.parseSearchResults(localIndex.browse(queryParameters));
+                } finally {
+                    getClient().releaseReadHandle(name, localIndex);
+                }
                 JSONArray hits = content.getJSONArray("hits");
 
                 // Retrieve object IDs.
@@ -1065,47 +1519,34 @@ public class OfflineIndex {
      * Write a temporary file containing a JSON object.
      *
      * @param object JSON object to write.
+     * @param tmpDir Directory where to create the file.
      * @return Path to the created file.
      * @throws AlgoliaException
      */
-    private @NonNull File writeTmpJSONFile(@NonNull JSONObject object) throws AlgoliaException {
-        return writeTempFile(object.toString());
-    }
-
-    /**
-     * Write a temporary file containing JSON objects. The files are written as an array.
-     *
-     * @param objects JSON objects to write.
-     * @return Path to the created file.
-     * @throws AlgoliaException
-     */
-    private File writeTmpJSONFile(@NonNull Collection<JSONObject> objects) throws AlgoliaException {
-        // TODO: Maybe split in several files if too big?
-        // TODO: Stream writing.
-        JSONArray array = new JSONArray();
-        for (JSONObject object : objects) {
-            array.put(object);
-        }
-        return writeTempFile(array.toString());
+    private @NonNull File writeTmpJSONFile(@NonNull JSONObject object, @NonNull File tmpDir) throws AlgoliaException {
+        return writeTempFile(object.toString(), tmpDir);
     }
 
     /**
      * Write a temporary file containing textual data in UTF-8 encoding.
      *
      * @param data Data to write.
+     * @param tmpDir Directory where to create the file.
      * @return Path to the created file.
      * @throws AlgoliaException
      */
-    private File writeTempFile(@NonNull String data) throws AlgoliaException {
+    private File writeTempFile(@NonNull String data, @NonNull File tmpDir) throws AlgoliaException {
         try {
             // Create temporary file.
-            File tmpDir = client.getTempDir();
             File tmpFile = File.createTempFile("algolia.", ".json", tmpDir);
 
             // Write to file.
             Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
-            writer.write(data);
-            writer.close();
+            try {
+                writer.write(data);
+            } finally {
+                writer.close();
+            }
 
             return tmpFile;
         } catch (IOException e) {
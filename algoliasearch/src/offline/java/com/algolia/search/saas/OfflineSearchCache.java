@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+/**
+ * A cache for the raw results of offline searches.
+ *
+ * Contrary to the online search cache, entries do not expire over time. Instead, the cache is tied to the generation
+ * of the local index (see {@link OfflineClient#getIndexGeneration(String)}): as soon as the index is modified, all
+ * entries become obsolete and are evicted.
+ */
+class OfflineSearchCache {
+    public static final int defaultMaxSize = 64;
+
+    private final LruCache<String, byte[]> lruCache;
+
+    /** Generation of the local index the cached entries belong to. */
+    private long generation = Long.MIN_VALUE;
+
+    public OfflineSearchCache(int maxSize) {
+        lruCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Get a value from the cache.
+     *
+     * @param key The value's key.
+     * @param generation The current generation of the local index.
+     * @return The cached value if it belongs to the current generation, else null.
+     */
+    synchronized public @Nullable byte[] get(@NonNull String key, long generation) {
+        if (!sync(generation)) {
+            return null;
+        }
+        return lruCache.get(key);
+    }
+
+    /**
+     * Put a value in the cache.
+     * If the value belongs to an older generation than the cached entries, it is ignored.
+     *
+     * @param key The value's key.
+     * @param value The value to cache.
+     * @param generation Generation of the local index the value was computed with.
+     */
+    synchronized public void put(@NonNull String key, @NonNull byte[] value, long generation) {
+        if (sync(generation)) {
+            lruCache.put(key, value);
+        }
+    }
+
+    /**
+     * Reset the cache, keeping the current settings.
+     */
+    synchronized public void reset() {
+        lruCache.evictAll();
+    }
+
+    /**
+     * Evict obsolete entries if the index has been modified.
+     *
+     * @param generation The generation of the caller.
+     * @return `true` if the caller is up-to-date with the cache, `false` if it is behind.
+     */
+    private boolean sync(long generation) {
+        if (generation > this.generation) {
+            lruCache.evictAll();
+            this.generation = generation;
+        }
+        return generation == this.generation;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utilities to import local data bundled as raw resources.
+ *
+ * Uncompressed resources are accessed directly through the APK's file descriptor: checksums are computed on a
+ * memory-mapped view of the resource, and copies are performed by channel transfers, without going through the
+ * Java heap. Compressed resources fall back to regular streams.
+ *
+ * **Note:** The stamp of the last imported resources is stored in the index's directory, so that importing an
+ * identical dataset again can be skipped. Any other build must clear it (see {@link #setImported}). Since computing
+ * the checksum of large resources is costly, a cheap fingerprint is checked first (see {@link #fingerprint}).
+ */
+class RawResources
+{
+    /** Name of the file storing the stamp of the last imported resources, inside the index's directory. */
+    private static final String STAMP_FILE_NAME = "resources.sha1";
+
+    /**
+     * Identifies a set of imported resources.
+     */
+    static class Stamp {
+        /** Checksum of the resources' content. See {@link #checksum}. */
+        final @NonNull String checksum;
+
+        /** Fingerprint of the resources. See {@link #fingerprint}. */
+        final @NonNull String fingerprint;
+
+        Stamp(@NonNull String checksum, @NonNull String fingerprint) {
+            this.checksum = checksum;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Compute a checksum of a set of resources.
+     *
+     * @param resources A {@link Resources} instance to read resources from.
+     * @param settingsResId Resource identifier of the index settings.
+     * @param objectsResIds Resource identifiers of the objects files.
+     * @return A checksum, as a hexadecimal string.
+     * @throws IOException if a resource cannot be read.
+     */
+    public static @NonNull String checksum(@NonNull Resources resources, int settingsResId, @NonNull int[] objectsResIds) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // should never happen
+        }
+        update(digest, resources, settingsResId);
+        for (int objectsResId : objectsResIds) {
+            update(digest, resources, objectsResId);
+        }
+        byte[] hash = digest.digest();
+        StringBuilder result = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Compute a cheap fingerprint of a set of resources, without reading their content.
+     * The fingerprint combines the size and modification time of the application's package with the location and
+     * length of each resource inside it. It changes whenever the application is updated, which is the only way
+     * bundled resources may change.
+     *
+     * **Warning:** Resources loaded from another package are only covered by their location and length.
+     *
+     * @param context The application's context.
+     * @param resources A {@link Resources} instance to read resources from.
+     * @param settingsResId Resource identifier of the index settings.
+     * @param objectsResIds Resource identifiers of the objects files.
+     * @return A fingerprint.
+     * @throws IOException if a resource cannot be opened.
+     */
+    public static @NonNull String fingerprint(@NonNull Context context, @NonNull Resources resources, int settingsResId, @NonNull int[] objectsResIds) throws IOException {
+        File packageFile = new File(context.getApplicationInfo().sourceDir);
+        StringBuilder result = new StringBuilder();
+        result.append(packageFile.length()).append('@').append(packageFile.lastModified());
+        appendLocation(result, resources, settingsResId);
+        for (int objectsResId : objectsResIds) {
+            appendLocation(result, resources, objectsResId);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Copy a resource to a file.
+     *
+     * @param resources A {@link Resources} instance to read resources from.
+     * @param resId Identifier of the resource to copy.
+     * @param destinationFile The file to be written to. The parent directory must exist. If the file already exists,
+     *                        it will be overwritten.
+     * @throws IOException if anything goes wrong.
+     */
+    public static void copy(@NonNull Resources resources, int resId, @NonNull File destinationFile) throws IOException {
+        AssetFileDescriptor fd = openRawResourceFd(resources, resId);
+        if (fd == null) {
+            FileUtils.writeFile(destinationFile, resources.openRawResource(resId));
+            return;
+        }
+        try {
+            FileInputStream inputStream = new FileInputStream(fd.getFileDescriptor());
+            try {
+                FileOutputStream outputStream = new FileOutputStream(destinationFile);
+                try {
+                    FileChannel source = inputStream.getChannel();
+                    FileChannel destination = outputStream.getChannel();
+                    long position = fd.getStartOffset();
+                    long remaining = fd.getLength();
+                    while (remaining > 0) {
+                        long bytesTransferred = source.transferTo(position, remaining, destination);
+                        if (bytesTransferred <= 0) {
+                            throw new IOException("Unexpected end of resource");
+                        }
+                        position += bytesTransferred;
+                        remaining -= bytesTransferred;
+                    }
+                } finally {
+                    outputStream.close();
+                }
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            fd.close();
+        }
+    }
+
+    /**
+     * Get the stamp of the last resources imported into an index.
+     *
+     * @param indexDir The index's directory.
+     * @return The stamp of the resources the index's current content was imported from, or `null` if none.
+     */
+    public static @Nullable Stamp getImported(@NonNull File indexDir) {
+        File stampFile = new File(indexDir, STAMP_FILE_NAME);
+        if (!stampFile.exists()) {
+            return null;
+        }
+        try {
+            String[] lines = FileUtils.readFile(stampFile).split("\n", -1);
+            // NOTE: Stamps written by previous versions only contain a checksum.
+            return new Stamp(lines[0], lines.length > 1 ? lines[1] : "");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Record the stamp of the resources imported into an index.
+     *
+     * **Note:** Must be called while holding the index's write lock (see {@link OfflineClient#getIndexLock}).
+     *
+     * @param indexDir The index's directory.
+     * @param stamp Stamp of the imported resources, or `null` if the index's content does not (or no longer) come
+     *              from resources.
+     */
+    public static void setImported(@NonNull File indexDir, @Nullable Stamp stamp) {
+        File stampFile = new File(indexDir, STAMP_FILE_NAME);
+        if (stamp == null) {
+            stampFile.delete();
+            return;
+        }
+        try {
+            indexDir.mkdirs();
+            FileUtils.writeFile(stampFile, stamp.checksum + "\n" + stamp.fingerprint);
+        } catch (IOException e) {
+            // Not fatal: the next import will just not be skipped.
+            stampFile.delete();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Implementation
+    // ----------------------------------------------------------------------
+
+    private static void update(@NonNull MessageDigest digest, @NonNull Resources resources, int resId) throws IOException {
+        AssetFileDescriptor fd = openRawResourceFd(resources, resId);
+        if (fd != null) {
+            try {
+                FileInputStream inputStream = new FileInputStream(fd.getFileDescriptor());
+                try {
+                    ByteBuffer buffer = inputStream.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+                    digest.update(buffer);
+                } finally {
+                    inputStream.close();
+                }
+            } finally {
+                fd.close();
+            }
+        } else {
+            InputStream inputStream = resources.openRawResource(resId);
+            try {
+                byte[] buffer = new byte[64 * 1024]; // 64 kB buffer
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+        // Separate resources, so that moving bytes from one resource to the next changes the checksum.
+        // (JSON text never contains a NUL character.)
+        digest.update((byte) 0);
+    }
+
+    private static void appendLocation(@NonNull StringBuilder fingerprint, @NonNull Resources resources, int resId) throws IOException {
+        fingerprint.append(',').append(resId);
+        AssetFileDescriptor fd = openRawResourceFd(resources, resId);
+        if (fd != null) {
+            try {
+                fingerprint.append('@').append(fd.getStartOffset()).append('+').append(fd.getLength());
+            } finally {
+                fd.close();
+            }
+        }
+    }
+
+    /**
+     * Open a raw resource as a file descriptor, if possible.
+     *
+     * @return A file descriptor, or `null` if the resource is compressed or its length is unknown.
+     */
+    private static @Nullable AssetFileDescriptor openRawResourceFd(@NonNull Resources resources, int resId) throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = resources.openRawResourceFd(resId);
+        } catch (Resources.NotFoundException e) {
+            // Compressed resources cannot be opened as file descriptors.
+            return null;
+        }
+        if (fd == null) {
+            return null;
+        }
+        if (fd.getLength() == AssetFileDescriptor.UNKNOWN_LENGTH) {
+            fd.close();
+            return null;
+        }
+        return fd;
+    }
+}
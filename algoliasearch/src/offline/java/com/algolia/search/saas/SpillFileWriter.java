@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams JSON objects to temporary files on disk ("spill files").
+ *
+ * Objects are serialized one by one as they are written, and buffered in memory until the buffer reaches a given
+ * size; only then are they flushed to disk. Each file contains a JSON array of objects, suitable for building a local
+ * index. When a file reaches a given size, it is closed and a new one is started.
+ *
+ * **Warning:** This class is not thread-safe.
+ */
+class SpillFileWriter {
+    /** Directory where the files are created. */
+    private final File directory;
+
+    /** Size of the in-memory buffer, in bytes. */
+    private final int bufferSize;
+
+    /** Size (in bytes) above which a file is closed and a new one started. */
+    private final long maxFileSize;
+
+    /** Files that have been completely written. */
+    private final List<File> files = new ArrayList<>();
+
+    /** File currently being written. Null if none. */
+    private File currentFile;
+
+    /** Writer for the current file. Null if none. */
+    private Writer writer;
+
+    /** Counts the bytes written to the current file. */
+    private CountingOutputStream counter;
+
+    /** Number of objects written to the current file. */
+    private int objectCount;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Construct a new writer.
+     *
+     * @param directory Directory where the files are created. Must exist.
+     * @param bufferSize Size of the in-memory buffer, in bytes.
+     * @param maxFileSize Size (in bytes) above which a file is closed and a new one started.
+     */
+    public SpillFileWriter(@NonNull File directory, int bufferSize, long maxFileSize) {
+        this.directory = directory;
+        this.bufferSize = bufferSize;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Write an object.
+     *
+     * @param object The object to write.
+     * @throws IOException if the object could not be written.
+     */
+    public void write(@NonNull JSONObject object) throws IOException {
+        if (writer == null) {
+            openFile();
+        }
+        if (objectCount > 0) {
+            writer.write(',');
+        }
+        writer.write(object.toString());
+        objectCount += 1;
+        // NOTE: The count does not include what the encoder still holds in its own buffer, so this is only an
+        // approximation, by at most a few kilobytes.
+        if (counter.getCount() >= maxFileSize) {
+            closeFile();
+        }
+    }
+
+    /**
+     * Close this writer.
+     * The current file is completed. The writer may still be used afterwards; in that case, a new file is started.
+     *
+     * @return The files written so far (in the order they were written).
+     * @throws IOException if the current file could not be completed.
+     */
+    public @NonNull List<File> close() throws IOException {
+        if (writer != null) {
+            closeFile();
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Discard everything written so far, deleting the corresponding files.
+     */
+    public void discard() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Ignore: the file is deleted anyway.
+            }
+            currentFile.delete();
+            writer = null;
+            currentFile = null;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        files.clear();
+    }
+
+    private void openFile() throws IOException {
+        currentFile = File.createTempFile("algolia.", ".json", directory);
+        counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(currentFile), bufferSize));
+        writer = new OutputStreamWriter(counter, UTF_8);
+        writer.write('[');
+        objectCount = 0;
+    }
+
+    private void closeFile() throws IOException {
+        try {
+            writer.write(']');
+            writer.close();
+        } finally {
+            files.add(currentFile);
+            writer = null;
+            currentFile = null;
+            counter = null;
+        }
+    }
+
+    /**
+     * An output stream counting the bytes written through it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        public CountingOutputStream(@NonNull OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count += 1;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -30,9 +30,18 @@ import org.mockito.internal.util.reflection.Whitebox;
 import org.robolectric.util.concurrent.RoboExecutorService;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * <a href="http://d.android.com/tools/testing/testing_android.html">Testing Fundamentals</a>
@@ -78,4 +87,82 @@ public class ClientTest extends RobolectricTestCase {
         assertNull(indices.get(indexName).get());
         */
     }
+
+    @Test
+    public void testBackgroundRequestsThrottled() throws Exception {
+        // Use an executor that only queues commands, so that we control when they run.
+        final List<Runnable> queuedCommands = new ArrayList<>();
+        Whitebox.setInternalState(client, "searchExecutorService", new AbstractExecutorService() {
+            @Override public void execute(Runnable command) { queuedCommands.add(command); }
+            @Override public void shutdown() {}
+            @Override public List<Runnable> shutdownNow() { return null; }
+            @Override public boolean isShutdown() { return false; }
+            @Override public boolean isTerminated() { return false; }
+            @Override public boolean awaitTermination(long timeout, TimeUnit unit) { return false; }
+        });
+        client.setMaxBackgroundRequests(1);
+        Executor backgroundExecutor = (Executor)Whitebox.getInternalState(client, "backgroundExecutor");
+        final List<Integer> ranCommands = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            final int commandNo = i;
+            backgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ranCommands.add(commandNo);
+                }
+            });
+        }
+
+        // Only one background command should reach the pool at a time, in submission order.
+        assertEquals(1, queuedCommands.size());
+        queuedCommands.remove(0).run();
+        assertEquals(Collections.singletonList(0), ranCommands);
+        assertEquals(1, queuedCommands.size());
+
+        // Raising the limit starts pending commands right away.
+        client.setMaxBackgroundRequests(2);
+        assertEquals(2, queuedCommands.size());
+        queuedCommands.remove(0).run();
+        queuedCommands.remove(0).run();
+        assertEquals(Arrays.asList(0, 1, 2), ranCommands);
+        assertEquals(0, queuedCommands.size());
+    }
+
+    @Test
+    public void testRejectedBackgroundRequestReleasesSlot() throws Exception {
+        // Use an executor that rejects the first command, and queues the following ones.
+        final List<Runnable> queuedCommands = new ArrayList<>();
+        Whitebox.setInternalState(client, "searchExecutorService", new AbstractExecutorService() {
+            private boolean rejected = false;
+            @Override public void execute(Runnable command) {
+                if (!rejected) {
+                    rejected = true;
+                    throw new RejectedExecutionException();
+                }
+                queuedCommands.add(command);
+            }
+            @Override public void shutdown() {}
+            @Override public List<Runnable> shutdownNow() { return null; }
+            @Override public boolean isShutdown() { return false; }
+            @Override public boolean isTerminated() { return false; }
+            @Override public boolean awaitTermination(long timeout, TimeUnit unit) { return false; }
+        });
+        client.setMaxBackgroundRequests(1);
+        Executor backgroundExecutor = (Executor)Whitebox.getInternalState(client, "backgroundExecutor");
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        try {
+            backgroundExecutor.execute(noop);
+            fail("The rejection should be propagated to the caller");
+        } catch (RejectedExecutionException e) {
+            // Expected.
+        }
+
+        // The rejected command must not hold its slot.
+        backgroundExecutor.execute(noop);
+        assertEquals(1, queuedCommands.size());
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the `Filter` class.
+ */
+public class FilterTest extends RobolectricTestCase {
+
+    /** Test compiling filters into the `filters` syntax. */
+    @Test
+    public void build() {
+        assertEquals("color:\"red\"", Filter.facet("color", "red").build());
+        assertEquals("\"my attribute\":\"say \\\"hi\\\"\"", Filter.facet("my attribute", "say \"hi\"").build());
+        assertEquals("_tags:\"promo\"", Filter.tag("promo").build());
+        assertEquals("price >= 10", Filter.numeric("price", ">=", 10).build());
+        assertEquals("price:10 TO 20.5", Filter.range("price", 10, 20.5).build());
+        assertEquals("NOT color:\"red\"", Filter.not(Filter.facet("color", "red")).build());
+
+        Filter filter = Filter.and(
+                Filter.or(Filter.facet("color", "red"), Filter.facet("color", "blue")),
+                Filter.numeric("price", "<", 100),
+                Filter.not(Filter.tag("a"))
+        );
+        assertEquals("(color:\"red\" OR color:\"blue\") AND price < 100 AND NOT _tags:\"a\"", filter.build());
+
+        // Single-item compounds are output as their item.
+        assertEquals("color:\"red\"", Filter.or(Filter.facet("color", "red")).build());
+        assertEquals("NOT _tags:\"a\"", Filter.not(Filter.and(Filter.or(Filter.tag("a")))).build());
+
+        // Nested compounds of the same kind are flattened.
+        assertEquals("_tags:\"a\" AND _tags:\"b\" AND _tags:\"c\"", Filter.and(Filter.tag("a"), Filter.and(Filter.tag("b"), Filter.tag("c"))).build());
+        assertEquals("_tags:\"a\" OR _tags:\"b\" OR NOT _tags:\"c\"", Filter.or(Filter.tag("a"), Filter.or(Filter.tag("b"), Filter.not(Filter.tag("c")))).build());
+    }
+
+    /** Test that shapes unsupported by the `filters` syntax are rejected. */
+    @Test
+    public void invalidShapes() {
+        final Filter a = Filter.tag("a");
+        final Filter b = Filter.tag("b");
+        final Filter c = Filter.tag("c");
+        assertInvalid(new Runnable() { @Override public void run() { Filter.and(); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.or(new ArrayList<Filter>()); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.not(Filter.and(Filter.or(a, b))); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.not(Filter.and(a, b)); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.not(Filter.not(a)); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.or(Filter.and(a, b), c); } });
+        assertInvalid(new Runnable() { @Override public void run() { Filter.or(c, Filter.and(Filter.or(a), b)); } });
+    }
+
+    private static void assertInvalid(Runnable construction) {
+        try {
+            construction.run();
+            fail("Invalid filter should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /** Test compiling filters into the `facetFilters` syntax. */
+    @Test
+    public void buildFacetFilters() throws Exception {
+        assertEquals(new JSONArray().put("color:red").toString(), Filter.facet("color", "red").buildFacetFilters());
+        Filter filter = Filter.and(
+                Filter.or(Filter.facet("color", "red"), Filter.facet("color", "blue")),
+                Filter.and(Filter.facet("brand", "Apple"), Filter.tag("promo"))
+        );
+        JSONArray expected = new JSONArray()
+                .put(new JSONArray().put("color:red").put("color:blue"))
+                .put("brand:Apple")
+                .put("_tags:promo");
+        assertEquals(expected.toString(), filter.buildFacetFilters());
+
+        // Special characters are escaped.
+        assertEquals(new JSONArray().put("a\"b:c/d\\").toString(), Filter.facet("a\"b", "c/d\\").buildFacetFilters());
+
+        // Items shared by several filters are compiled only once.
+        Filter colors = Filter.or(Filter.facet("color", "red"), Filter.facet("color", "blue"));
+        Filter.and(colors, Filter.tag("a")).buildFacetFilters();
+        String colorsItem = colors.buildFacetFiltersItem();
+        Filter.and(colors, Filter.tag("b")).buildFacetFilters();
+        assertSame(colorsItem, colors.buildFacetFiltersItem());
+
+        try {
+            Filter.and(Filter.facet("color", "red"), Filter.numeric("price", "<", 100)).buildFacetFilters();
+            fail("Numeric filters cannot be expressed as facet filters");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /** Test that invalid numeric operators are rejected. */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidOperator() {
+        Filter.numeric("price", "=>", 10);
+    }
+
+    /** Test equality and usage in queries. */
+    @Test
+    public void query() {
+        Filter filter1 = Filter.and(Filter.tag("a"), Filter.numeric("b", "=", 1));
+        Filter filter2 = Filter.and(Filter.tag("a"), Filter.numeric("b", "=", 1));
+        assertEquals(filter1, filter2);
+        assertEquals(filter1.hashCode(), filter2.hashCode());
+        assertNotEquals(filter1, Filter.or(Filter.tag("a"), Filter.numeric("b", "=", 1)));
+
+        Query query = new Query().setFilter(filter1);
+        assertEquals("_tags:\"a\" AND b = 1", query.getFilters());
+        assertEquals(null, query.setFilter(null).getFilters());
+    }
+}
@@ -24,6 +24,7 @@
 package com.algolia.search.saas;
 
 import android.annotation.SuppressLint;
+import android.support.annotation.NonNull;
 
 import com.algolia.search.saas.helpers.DisjunctiveFaceting;
 
@@ -32,6 +33,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.mockito.internal.util.reflection.Whitebox;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.concurrent.RoboExecutorService;
 
 import java.io.IOException;
@@ -281,6 +283,55 @@ public class IndexTest extends RobolectricTestCase {
         });
     }
 
+    @Test
+    public void disjunctiveFacetingProgressive() throws Exception {
+        // Set index settings.
+        JSONObject setSettingsResult = index.setSettings(new JSONObject("{\"attributesForFaceting\":[\"city\", \"stars\", \"facilities\"]}"));
+        index.waitTask(setSettingsResult.getString("taskID"));
+
+        // Add objects.
+        JSONObject addObjectsResult = index.addObjects(new JSONArray()
+                .put(new JSONObject("{\"name\":\"Hotel A\", \"stars\":\"*\", \"facilities\":[\"wifi\", \"bath\", \"spa\"], \"city\":\"Paris\"}"))
+                .put(new JSONObject("{\"name\":\"Hotel B\", \"stars\":\"*\", \"facilities\":[\"wifi\"], \"city\":\"Paris\"}"))
+                .put(new JSONObject("{\"name\":\"Hotel C\", \"stars\":\"**\", \"facilities\":[\"bath\"], \"city\":\"San Fancisco\"}"))
+                .put(new JSONObject("{\"name\":\"Hotel D\", \"stars\":\"****\", \"facilities\":[\"spa\"], \"city\":\"Paris\"}"))
+                .put(new JSONObject("{\"name\":\"Hotel E\", \"stars\":\"****\", \"facilities\":[\"spa\"], \"city\":\"New York\"}")));
+        index.waitTask(addObjectsResult.getString("taskID"));
+
+        // Search.
+        final Query query = new Query("h").setFacets("city");
+        final List<String> disjunctiveFacets = Arrays.asList("stars", "facilities");
+        final Map<String, List<String>> refinements = new HashMap<>();
+        refinements.put("stars", Collections.singletonList("*"));
+
+        final int[] progressCount = { 0 };
+        final boolean[] completed = { false };
+        index.searchDisjunctiveFacetingAsync(query, disjunctiveFacets, refinements, new ProgressiveCompletionHandler() {
+            @Override
+            public void requestProgressed(JSONObject content) {
+                // Hits are always available; disjunctive facets may not be.
+                assertFalse(completed[0]);
+                assertEquals(2, content.optInt("nbHits"));
+                assertTrue(content.optJSONObject("disjunctiveFacets").length() < 2);
+                progressCount[0] += 1;
+            }
+
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                assertEquals(2, content.optInt("nbHits"));
+                assertEquals(1, content.optJSONObject("facets").length());
+                assertEquals(2, content.optJSONObject("disjunctiveFacets").length());
+                assertEquals(2, content.optJSONObject("disjunctiveFacets").optJSONObject("stars").optInt("*"));
+                assertEquals(1, content.optJSONObject("disjunctiveFacets").optJSONObject("stars").optInt("**"));
+                assertEquals(2, content.optJSONObject("disjunctiveFacets").optJSONObject("stars").optInt("****"));
+                completed[0] = true;
+            }
+        });
+        assertTrue("Progressive request did not complete", completed[0]);
+        assertTrue(progressCount[0] <= 2);
+    }
+
     @Test
     public void aggregateResultsPropagatesNonExhaustiveCount() throws Exception {
         try {
@@ -556,6 +607,30 @@ public class IndexTest extends RobolectricTestCase {
     }
 
 
+    @Test
+    public void requestTimeout() throws Exception {
+        // On Travis, the reported run duration is not reliable.
+        if ("true".equals(System.getenv("TRAVIS"))) {
+            return;
+        }
+
+        // All hosts accept no connection: without a request timeout, this would take 4 connect timeouts.
+        final String unreachableHost = "notcp-xx-1.algolianet.com";
+        client.setReadHosts(unreachableHost, unreachableHost, unreachableHost, unreachableHost);
+        client.setConnectTimeout(2000);
+
+        long start = System.currentTimeMillis();
+        try {
+            index.searchSync(new Query("francisco").setRequestTimeout(1000));
+            fail("The search should have failed");
+        } catch (AlgoliaException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+        }
+        final long totalMillis = System.currentTimeMillis() - start;
+        assertTrue(String.format("The test ran longer than expected (%d > 1500ms).", totalMillis), totalMillis <= 1500);
+        assertTrue("A timeout shortened by the deadline should not mark the host as down", client.isUpOrCouldBeRetried(unreachableHost));
+    }
+
     @Test
     public void connectionResetException() throws IOException, AlgoliaException {
         Thread runnable = new Thread() {
@@ -587,6 +662,37 @@ public class IndexTest extends RobolectricTestCase {
         assertTrue("The test ran longer than expected (" + end + "ms > 2s)", end < 2 * 1000);
     }
 
+    @Test
+    public void cancelledRequestSkipsHosts() throws Exception {
+        final String unreachableHost = UUID.randomUUID().toString() + ".algolia.biz";
+        client.setReadHosts(unreachableHost);
+        final long begin = System.currentTimeMillis();
+        AbstractClient.AsyncTaskRequest request = client.new AsyncTaskRequest(new CompletionHandler() {
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                fail("The completion handler should not be called after cancellation");
+            }
+        }) {
+            @NonNull
+            @Override
+            protected JSONObject run() throws AlgoliaException {
+                // Cancel the request from within, before any network call is made.
+                cancel();
+                return client.listIndexes();
+            }
+        }.start();
+        // Clear the interrupted flag possibly set on this thread by the synchronous executor.
+        Thread.interrupted();
+
+        assertTrue(request.isCancelled());
+        assertTrue("Hosts should not have been tried", System.currentTimeMillis() - begin < 1000);
+        assertTrue("Cancellation should not mark hosts as down", client.isUpOrCouldBeRetried(unreachableHost));
+        AbstractClient.RequestStats stats = client.getRequestStats();
+        assertEquals(1, stats.getCancelledCount());
+        assertEquals(1, stats.getStartedCount());
+        assertEquals(0, stats.getRunningCount());
+    }
+
     @Test
     public void SNI() throws Exception {
         // Given all hosts using SNI
@@ -834,6 +940,70 @@ public class IndexTest extends RobolectricTestCase {
         index.addObjectAsync(new JSONObject("{\"city\": \"New York\"}"), null);
     }
 
+    @Test
+    public void searchBatching() throws Exception {
+        // NOTE: The batch size triggers the call, so that we don't depend on the batching delay.
+        client.enableSearchBatching(Helpers.wait * 1000, 2);
+        index.searchAsync(new Query("francisco"), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                if (error != null) {
+                    fail(error.getMessage());
+                } else {
+                    assertEquals(1, content.optInt("nbHits"));
+                    assertEquals("San Francisco", content.optJSONArray("hits").optJSONObject(0).optString("city"));
+                }
+            }
+        });
+        index.searchAsync(new Query("jose"), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                if (error != null) {
+                    fail(error.getMessage());
+                } else {
+                    assertEquals(1, content.optInt("nbHits"));
+                    assertEquals("San José", content.optJSONArray("hits").optJSONObject(0).optString("city"));
+                }
+            }
+        });
+        client.disableSearchBatching();
+    }
+
+    @Test
+    public void searchSession() throws Exception {
+        final List<String> deliveredQueries = new ArrayList<>();
+        SearchSession session = index.newSearchSession(new CompletionHandler() {
+            @Override
+            public void requestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                deliveredQueries.add(content.optString("query"));
+            }
+        });
+
+        // Debouncing: only the last search is sent.
+        session.search(new Query("s"));
+        session.search(new Query("san"));
+        session.search(new Query("san j"));
+        assertEquals(0, session.getSentCount());
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(1, session.getSentCount());
+        assertEquals(Collections.singletonList("san j"), deliveredQueries);
+        assertEquals(1, session.getLatencyHistogram().getCount());
+
+        // Cancellation: nothing is delivered.
+        session.search(new Query("jose"));
+        session.cancel();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(1, session.getSentCount());
+        assertEquals(1, deliveredQueries.size());
+
+        // No debouncing.
+        session.setDebounceDelay(0);
+        session.search(new Query("francisco"));
+        assertEquals(2, session.getSentCount());
+        assertEquals(Arrays.asList("san j", "francisco"), deliveredQueries);
+    }
+
     @Test
     public void multipleQueries() throws Exception {
         final List<Query> queries = Arrays.asList(
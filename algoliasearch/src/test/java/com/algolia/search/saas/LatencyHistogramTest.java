@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the `LatencyHistogram` class.
+ */
+public class LatencyHistogramTest extends RobolectricTestCase {
+
+    @Test
+    public void record() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+
+        for (long latency : new long[] { 5, 10, 15, 40, 80, 80, 150, 400, 900, 12000 }) {
+            histogram.record(latency);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getMin());
+        assertEquals(12000, histogram.getMax());
+        assertEquals(1368.0, histogram.getMean(), 0.001);
+        assertArrayEquals(new long[] { 2, 1, 1, 2, 1, 1, 1, 0, 0, 1 }, histogram.getBucketCounts());
+
+        // Percentiles are reported as bucket upper bounds, capped by the maximum.
+        assertEquals(10, histogram.getPercentile(0));
+        assertEquals(100, histogram.getPercentile(50));
+        assertEquals(1000, histogram.getPercentile(90));
+        assertEquals(12000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new LatencyHistogram().getPercentile(101);
+    }
+}
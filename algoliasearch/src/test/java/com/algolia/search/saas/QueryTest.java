@@ -28,9 +28,11 @@ import org.json.JSONException;
 import org.junit.Test;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
@@ -86,6 +88,184 @@ public class QueryTest extends RobolectricTestCase {
         assertEquals(query, Query.parse(queryString));
     }
 
+    /** Test that escaping matches the standard URL encoder (with spaces encoded as `%20`). */
+    @Test
+    public void escapeLikeURLEncoder() throws UnsupportedEncodingException {
+        String[] values = {
+            "", "abcXYZ019.-*_", " ", "+", "~!'()", "a b+c", "\u007f\u0080\u07ff\u0800\uffff", "\u4e2d\u6587",
+            "\ud83d\ude00", // surrogate pair (emoji)
+            "x\ud83dy", "x\ude00y", "\ud83d", // unpaired surrogates
+        };
+        for (String value : values) {
+            Query query = new Query().set("key", value);
+            assertEquals("key=" + URLEncoder.encode(value, "UTF-8").replace("+", "%20"), query.build());
+        }
+    }
+
+    /** Test that the cached serialization is invalidated by modifications. */
+    @Test
+    public void buildCache() {
+        Query query = new Query("foo");
+        assertEquals("query=foo", query.build());
+        query.setHitsPerPage(5);
+        assertEquals("hitsPerPage=5&query=foo", query.build());
+        Query copy = new Query(query);
+        assertEquals(query.build(), copy.build());
+        copy.set("query", null);
+        assertEquals("hitsPerPage=5", copy.build());
+        assertEquals("hitsPerPage=5&query=foo", query.build());
+        query.parseFrom("page=2");
+        assertEquals("hitsPerPage=5&page=2&query=foo", query.build());
+    }
+
+    /** Test that the request timeout is a client-side option, not a search parameter. */
+    @Test
+    public void requestTimeout() {
+        Query query = new Query("foo").setRequestTimeout(1500);
+        assertEquals(Integer.valueOf(1500), query.getRequestTimeout());
+        assertEquals("query=foo", query.build());
+        assertEquals(new Query("foo"), query);
+
+        // Copies keep the timeout.
+        assertEquals(Integer.valueOf(1500), new Query(query).getRequestTimeout());
+        assertEquals(Integer.valueOf(1500), query.with("page", 2).getRequestTimeout());
+
+        assertNull(query.setRequestTimeout(null).getRequestTimeout());
+        try {
+            query.setRequestTimeout(0);
+            fail("Non-positive timeouts should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /** Test that copies share parameters without affecting each other. */
+    @Test
+    public void copyOnWrite() {
+        Query query = new Query("foo").setHitsPerPage(5);
+        Query copy = new Query(query);
+        assertEquals(query, copy);
+
+        // Modifying either query does not affect the other.
+        copy.setPage(2);
+        query.set("hitsPerPage", null);
+        assertEquals("hitsPerPage=5&page=2&query=foo", copy.build());
+        assertEquals("query=foo", query.build());
+        assertNull(query.get("hitsPerPage"));
+        assertEquals("5", copy.get("hitsPerPage"));
+
+        // Derive a query.
+        Query derived = copy.with("query", "bar");
+        assertEquals("bar", derived.get("query"));
+        assertEquals("foo", copy.get("query"));
+
+        // Apply many changes, so that they are merged into the base parameters.
+        for (int i = 0; i < 20; ++i) {
+            derived.set("param" + i, i);
+        }
+        for (int i = 0; i < 20; i += 2) {
+            derived.set("param" + i, null);
+        }
+        assertNull(derived.get("param0"));
+        assertEquals("19", derived.get("param19"));
+        assertNull(copy.get("param19"));
+        assertEquals(Query.parse(derived.build()), derived);
+        assertEquals(Query.parse(derived.build()).hashCode(), derived.hashCode());
+    }
+
+    /** Test parsing of edge cases. */
+    @Test
+    public void parseEdgeCases() {
+        Query query = Query.parse("a=b=c&b=&=&c=x+y%20z&d=e=&&f");
+        assertNull(query.get("a")); // more than one `=`: ignored
+        assertNull(query.get("b")); // empty value: removed
+        assertEquals("x y z", query.get("c"));
+        assertEquals("e", query.get("d")); // trailing `=` dropped
+        assertNull(query.get("f"));
+        assertEquals("c=x%20y%20z&d=e", query.build());
+
+        // Empty value removes an existing parameter.
+        query.parseFrom("c=");
+        assertNull(query.get("c"));
+
+        // Malformed escapes are rejected.
+        for (String invalid : new String[] { "a=%", "a=%4", "a=%G0", "%zz=b" }) {
+            try {
+                Query.parse(invalid);
+                fail("Invalid escape should be rejected: " + invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    /** Fuzz test: parsing the output of `build()` yields the same query. */
+    @Test
+    public void parseBuildRoundTrip() {
+        final Random random = new Random(42);
+        for (int iteration = 0; iteration < 1000; ++iteration) {
+            Query query = new Query();
+            int parameterCount = random.nextInt(10);
+            for (int i = 0; i < parameterCount; ++i) {
+                // NOTE: Empty values cannot round-trip: `a=` is parsed as a removal.
+                query.set(randomString(random, 1), randomString(random, 1));
+            }
+            assertEquals(query, Query.parse(query.build()));
+        }
+    }
+
+    /** Fuzz test: parsing arbitrary strings behaves like the historical `split()` + `URLDecoder` implementation. */
+    @Test
+    public void parseLikeURLDecoder() throws UnsupportedEncodingException {
+        final Random random = new Random(42);
+        // NOTE: `+` is left out because `URLDecoder` accepts it as a sign inside escapes (e.g. `%+F`), a quirk we don't
+        // reproduce. Its decoding as a space is covered by `parseEdgeCases()`.
+        final String alphabet = "ab=&% 0F9éz";
+        for (int iteration = 0; iteration < 10000; ++iteration) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int i = 0; i < length; ++i) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String queryString = builder.toString();
+            Query expected = null;
+            try {
+                expected = new Query();
+                for (String parameter : queryString.split("&")) {
+                    String[] components = parameter.split("=");
+                    if (components.length < 1 || components.length > 2 || parameter.isEmpty())
+                        continue;
+                    String name = URLDecoder.decode(components[0], "UTF-8");
+                    String value = components.length >= 2 ? URLDecoder.decode(components[1], "UTF-8") : null;
+                    expected.set(name, value);
+                }
+            } catch (IllegalArgumentException e) {
+                expected = null;
+            }
+            try {
+                Query actual = Query.parse(queryString);
+                assertEquals(queryString, expected, actual);
+            } catch (IllegalArgumentException e) {
+                assertNull(queryString, expected);
+            }
+        }
+    }
+
+    private static String randomString(Random random, int minLength) {
+        final String alphabet = "aZ09 -_.*~+&=%#?/\u00e9\u4e2d\ud83d\ude00";
+        StringBuilder builder = new StringBuilder();
+        int length = minLength + random.nextInt(8);
+        for (int i = 0; i < length; ++i) {
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            if (Character.isSurrogate(c)) {
+                builder.append("\ud83d\ude00"); // keep surrogates paired
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
     // ----------------------------------------------------------------------
     // Low-level
     // ----------------------------------------------------------------------
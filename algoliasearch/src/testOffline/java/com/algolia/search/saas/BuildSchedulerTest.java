@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012-2016 Algolia
+ * http://www.algolia.com/
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.algolia.search.saas;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the `BuildScheduler` class.
+ *
+ * Jobs are run on a manual executor, so that each test decides when a started job completes.
+ */
+public class BuildSchedulerTest extends RobolectricTestCase {
+
+    /** Executor queueing the started jobs until they are explicitly run. */
+    private static class ManualExecutor implements Executor {
+        final Deque<Runnable> startedJobs = new ArrayDeque<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            startedJobs.add(command);
+        }
+
+        /** Run the oldest started job to completion. */
+        void runNext() {
+            startedJobs.removeFirst().run();
+        }
+
+        /** Run started jobs until there are none left. */
+        void runAll() {
+            while (!startedJobs.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    /** Names of the jobs that have run, in order. */
+    private final List<String> log = new ArrayList<>();
+
+    private Runnable job(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void priorityOrder() {
+        BuildScheduler scheduler = new BuildScheduler(executor, 1);
+        scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, null, job("a"), null);
+        scheduler.submit("b", BuildScheduler.Priority.BACKGROUND, null, job("b"), null);
+        scheduler.submit("c", BuildScheduler.Priority.USER, null, job("c"), null);
+        scheduler.submit("d", BuildScheduler.Priority.BACKGROUND, null, job("d"), null);
+        // Only the first job has started, since only one job may run at a time.
+        assertEquals(1, executor.startedJobs.size());
+        executor.runAll();
+        assertEquals(Arrays.asList("a", "c", "b", "d"), log);
+    }
+
+    @Test
+    public void fifoWithinPriority() {
+        BuildScheduler scheduler = new BuildScheduler(executor, 2);
+        scheduler.submit("a", BuildScheduler.Priority.USER, null, job("a1"), null);
+        scheduler.submit("a", BuildScheduler.Priority.USER, null, job("a2"), null);
+        scheduler.submit("b", BuildScheduler.Priority.USER, null, job("b1"), null);
+        scheduler.submit("a", BuildScheduler.Priority.USER, null, job("a3"), null);
+        // Jobs on different indices run in parallel, jobs on the same index one after the other.
+        assertEquals(2, executor.startedJobs.size());
+        executor.runAll();
+        assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), log);
+    }
+
+    @Test
+    public void coalescing() {
+        BuildScheduler scheduler = new BuildScheduler(executor, 1);
+        // A running job does not absorb new jobs: only pending ones do.
+        assertTrue(scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, "sync", job("sync1"), null));
+        assertTrue(scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, "sync", job("sync2"), null));
+        assertFalse(scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, "sync", job("sync3"), null));
+        // Other keys and other indices are not coalesced.
+        assertTrue(scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, "other", job("other"), null));
+        assertTrue(scheduler.submit("b", BuildScheduler.Priority.BACKGROUND, "sync", job("syncB"), null));
+        executor.runAll();
+        assertEquals(Arrays.asList("sync1", "sync2", "other", "syncB"), log);
+
+        OfflineClient.BuildStats stats = scheduler.getStats();
+        assertEquals(4, stats.getSubmittedCount());
+        assertEquals(1, stats.getCoalescedCount());
+        assertEquals(4, stats.getCompletedCount());
+    }
+
+    @Test
+    public void cancellation() {
+        BuildScheduler scheduler = new BuildScheduler(executor, 1);
+        final List<String> cancelled = new ArrayList<>();
+        Runnable cancellationHandler = new Runnable() {
+            @Override
+            public void run() {
+                cancelled.add("sync");
+            }
+        };
+        scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, null, job("running"), cancellationHandler);
+        scheduler.submit("a", BuildScheduler.Priority.BACKGROUND, null, job("sync"), cancellationHandler);
+        scheduler.submit("a", BuildScheduler.Priority.USER, null, job("commit"), null);
+        scheduler.submit("b", BuildScheduler.Priority.BACKGROUND, null, job("other"), cancellationHandler);
+
+        // Only pending, cancellable jobs of the index are cancelled.
+        assertEquals(1, scheduler.cancelPending("a"));
+        assertEquals(Arrays.asList("sync"), cancelled);
+        assertEquals(2, scheduler.getStats().getPendingCount());
+        executor.runAll();
+        assertEquals(Arrays.asList("running", "commit", "other"), log);
+
+        OfflineClient.BuildStats stats = scheduler.getStats();
+        assertEquals(1, stats.getCancelledCount());
+        assertEquals(3, stats.getCompletedCount());
+        assertEquals(0, stats.getPendingCount());
+        assertEquals(0, stats.getRunningCount());
+    }
+
+    /** Test that a job waiting for one of its indices is not overtaken on the others. */
+    @Test
+    public void multiIndexOrdering() {
+        BuildScheduler scheduler = new BuildScheduler(executor, 2);
+        scheduler.submit("src", BuildScheduler.Priority.BACKGROUND, null, job("sync"), null);
+        scheduler.executorFor(BuildScheduler.Priority.USER, "src", "dst").execute(job("move"));
+        scheduler.executorFor(BuildScheduler.Priority.USER, "dst").execute(job("commit"));
+        scheduler.executorFor(BuildScheduler.Priority.USER, "other").execute(job("unrelated"));
+
+        // The move waits for the sync; the commit waits for the move, although its index is idle.
+        assertEquals(2, executor.startedJobs.size());
+        executor.runNext();
+        executor.runNext();
+        assertEquals(Arrays.asList("sync", "unrelated"), log);
+        executor.runAll();
+        assertEquals(Arrays.asList("sync", "unrelated", "move", "commit"), log);
+    }
+}
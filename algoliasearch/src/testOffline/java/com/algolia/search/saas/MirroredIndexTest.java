@@ -31,6 +31,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
 import org.robolectric.RuntimeEnvironment;
 
 import java.io.File;
@@ -235,6 +236,115 @@ public class MirroredIndexTest extends OfflineTestBase  {
         });
     }
 
+    @Test
+    public void testSyncSkipsUnchangedBuild() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+
+        // Populate the online index & sync the offline mirror.
+        final MirroredIndex index = client.getIndex(Helpers.safeIndexName(Helpers.getMethodName()));
+        sync(index, new SyncCompletionHandler() {
+            @Override
+            public void syncCompleted(@Nullable Throwable error) {
+                assertNull(error);
+
+                // Sync again: since the online data has not changed, the build should be skipped.
+                listener = new SyncListener() {
+                    @Override
+                    public void syncDidStart(MirroredIndex index) {
+                        // Nothing to do.
+                    }
+
+                    @Override
+                    public void syncDidFinish(MirroredIndex index, Throwable error, MirroredIndex.SyncStats stats) {
+                        index.removeSyncListener(listener);
+                        assertNull(error);
+                        assertTrue(stats.isBuildSkipped());
+                        assertTrue(index.hasOfflineData());
+                        signal.countDown();
+                    }
+                };
+                index.addSyncListener(listener);
+                index.sync();
+            }
+        });
+    }
+
+    /**
+     * Test that adaptive sync learns the delay between syncs from the observed changes.
+     */
+    @Test
+    public void testAdaptiveSync() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+
+        final MirroredIndex index = client.getIndex(Helpers.safeIndexName(Helpers.getMethodName()));
+        index.setAdaptiveSyncEnabled(true);
+        final long initialDelay = index.getEffectiveDelayBetweenSyncs();
+        assertEquals(index.getDelayBetweenSyncs(), initialDelay);
+        // Populate the online index & sync the offline mirror.
+        sync(index, new SyncCompletionHandler() {
+            @Override
+            public void syncCompleted(@Nullable Throwable error) {
+                assertNull(error);
+                // Nothing to compare the first sync with: the delay is unchanged.
+                assertEquals(initialDelay, index.getEffectiveDelayBetweenSyncs());
+
+                // Sync again: since the online data has not changed, the delay should double.
+                index.setMaxDelayBetweenSyncs(initialDelay * 3);
+                listener = new SyncListener() {
+                    @Override
+                    public void syncDidStart(MirroredIndex index) {
+                        // Nothing to do.
+                    }
+
+                    @Override
+                    public void syncDidFinish(final MirroredIndex index, Throwable error, MirroredIndex.SyncStats stats) {
+                        index.removeSyncListener(listener);
+                        assertNull(error);
+                        assertTrue(stats.isBuildSkipped());
+                        assertEquals(initialDelay * 2, index.getEffectiveDelayBetweenSyncs());
+
+                        // Sync once more: the delay cannot grow past the upper bound.
+                        listener = new SyncListener() {
+                            @Override
+                            public void syncDidStart(MirroredIndex index) {
+                                // Nothing to do.
+                            }
+
+                            @Override
+                            public void syncDidFinish(MirroredIndex index, Throwable error, MirroredIndex.SyncStats stats) {
+                                index.removeSyncListener(listener);
+                                assertNull(error);
+                                assertEquals(initialDelay * 3, index.getEffectiveDelayBetweenSyncs());
+                                signal.countDown();
+                            }
+                        };
+                        index.addSyncListener(listener);
+                        index.sync();
+                    }
+                };
+                index.addSyncListener(listener);
+                index.sync();
+            }
+        });
+    }
+
+    /**
+     * Test how the delay between syncs evolves depending on the observed changes.
+     */
+    @Test
+    public void testComputeAdaptiveDelay() {
+        // Unchanged content: the delay doubles.
+        assertEquals(2000, MirroredIndex.computeAdaptiveDelay(1000, 0, 100, 10000));
+        // Changed content: the delay shrinks in proportion to the changes...
+        assertEquals(750, MirroredIndex.computeAdaptiveDelay(1000, 0.25, 100, 10000));
+        // ... but by half at most.
+        assertEquals(500, MirroredIndex.computeAdaptiveDelay(1000, 0.9, 100, 10000));
+        assertEquals(500, MirroredIndex.computeAdaptiveDelay(1000, 1, 100, 10000));
+        // The delay stays within bounds.
+        assertEquals(10000, MirroredIndex.computeAdaptiveDelay(8000, 0, 100, 10000));
+        assertEquals(100, MirroredIndex.computeAdaptiveDelay(150, 1, 100, 10000));
+    }
+
     @Test
     public void testSearch() throws Exception {
         final CountDownLatch signal = new CountDownLatch(2);
@@ -648,6 +758,55 @@ public class MirroredIndexTest extends OfflineTestBase  {
                                     assertTrue(duration >= index.getOfflineFallbackTimeout());
                                     assertTrue(duration < Math.min(client.getSearchTimeout(), client.getReadTimeout()));
                                 }
+                                // Check statistics.
+                                MirroredIndex.OfflineFallbackStats stats = index.getOfflineFallbackStats(MirroredIndex.RequestType.SEARCH);
+                                assertEquals(1, stats.getOnlineCount());
+                                assertEquals(1, stats.getOfflineCount());
+                                assertEquals(0, stats.getFailureCount());
+                                signal.countDown();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testRequestStrategyProgressive() {
+        final CountDownLatch signal = new CountDownLatch(1);
+
+        final MirroredIndex index = client.getIndex(Helpers.safeIndexName(Helpers.getMethodName()));
+        index.setRequestStrategy(MirroredIndex.Strategy.PROGRESSIVE);
+        // Populate the online index & sync the offline mirror.
+        sync(index, new SyncCompletionHandler() {
+            @Override
+            public void syncCompleted(@Nullable Throwable error) {
+                assertNull(error);
+
+                // Test online success: preliminary results are local, final results are remote.
+                index.searchAsync(new Query(), new ProgressiveCompletionHandler() {
+                    @Override
+                    public void requestProgressed(JSONObject content) {
+                        assertEquals(3, content.optInt("nbHits"));
+                        assertEquals("local", content.optString("origin"));
+                    }
+
+                    @Override
+                    public void requestCompleted(JSONObject content, AlgoliaException error) {
+                        assertNull(error);
+                        assertEquals(5, content.optInt("nbHits"));
+                        assertEquals("remote", content.optString("origin"));
+
+                        // Test network failure: final results are local.
+                        final String timeoutingHost = UUID.randomUUID().toString() + ".algolia.biz";
+                        client.setReadHosts(timeoutingHost);
+                        index.searchAsync(new Query(), new AssertCompletionHandler() {
+                            @Override
+                            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                assertNull(error);
+                                assertEquals(3, content.optInt("nbHits"));
+                                assertEquals("local", content.optString("origin"));
                                 signal.countDown();
                             }
                         });
@@ -657,6 +816,65 @@ public class MirroredIndexTest extends OfflineTestBase  {
         });
     }
 
+    /**
+     * Test that the adaptive offline fallback timeout follows online latencies, within its bounds.
+     */
+    @Test
+    @SuppressWarnings("unchecked") // Whitebox requires casts from Object
+    public void testAdaptiveOfflineFallbackTimeout() {
+        final MirroredIndex index = client.getIndex(Helpers.safeIndexName(Helpers.getMethodName()));
+        index.setAdaptiveOfflineFallbackTimeout(true);
+        index.setMinOfflineFallbackTimeout(300);
+        index.setMaxOfflineFallbackTimeout(1000);
+        OfflineFallbackTracker tracker = ((Map<MirroredIndex.RequestType, OfflineFallbackTracker>)Whitebox.getInternalState(index, "fallbackTrackers")).get(MirroredIndex.RequestType.SEARCH);
+
+        // Not enough latencies yet: the fixed timeout is used.
+        assertEquals(index.getOfflineFallbackTimeout(), index.getEffectiveOfflineFallbackTimeout(MirroredIndex.RequestType.SEARCH));
+
+        // Fast online requests: the timeout is capped by the lower bound.
+        for (int i = 0; i < 50; ++i) {
+            tracker.recordLatency(50);
+        }
+        assertEquals(300, index.getEffectiveOfflineFallbackTimeout(MirroredIndex.RequestType.SEARCH));
+
+        // Slow online requests: the timeout is capped by the upper bound.
+        for (int i = 0; i < 50; ++i) {
+            tracker.recordLatency(5000);
+        }
+        assertEquals(1000, index.getEffectiveOfflineFallbackTimeout(MirroredIndex.RequestType.SEARCH));
+
+        // In between: the timeout follows the latencies.
+        for (int i = 0; i < 50; ++i) {
+            tracker.recordLatency(600);
+        }
+        assertEquals(600, index.getEffectiveOfflineFallbackTimeout(MirroredIndex.RequestType.SEARCH));
+
+        // Other request types are not affected.
+        assertEquals(index.getOfflineFallbackTimeout(), index.getEffectiveOfflineFallbackTimeout(MirroredIndex.RequestType.GET_OBJECT));
+
+        // Inconsistent bounds are rejected.
+        try {
+            index.setMinOfflineFallbackTimeout(-1);
+            fail("Negative minimum timeout should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            index.setMinOfflineFallbackTimeout(2000);
+            fail("Minimum timeout above the maximum should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            index.setMaxOfflineFallbackTimeout(100);
+            fail("Maximum timeout below the minimum should be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        assertEquals(300, index.getMinOfflineFallbackTimeout());
+        assertEquals(1000, index.getMaxOfflineFallbackTimeout());
+    }
+
     /**
      * Test that a non-mirrored index behaves like a purely online index.
      */
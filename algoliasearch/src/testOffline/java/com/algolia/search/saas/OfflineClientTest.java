@@ -27,6 +27,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
@@ -166,4 +167,47 @@ public class OfflineClientTest extends OfflineTestBase  {
             }
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHasOfflineDataIsCached() throws Exception {
+        final String srcName = Helpers.getMethodName();
+        final String dstName = Helpers.getMethodName() + "_new";
+        final OfflineIndex index = client.getOfflineIndex(srcName);
+        assertFalse(client.hasOfflineData(srcName));
+
+        // Build: the cached flag is invalidated.
+        final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+        transaction.saveObjectsSync(new JSONArray(objects.values()));
+        transaction.commitSync();
+        assertTrue(client.hasOfflineData(srcName));
+
+        // Modifications made behind the client's back are not seen: the flag is cached.
+        File srcDir = client.getIndexDir(srcName);
+        File hiddenDir = new File(srcDir.getParentFile(), srcName + "_hidden");
+        assertTrue(srcDir.renameTo(hiddenDir));
+        assertTrue(client.hasOfflineData(srcName));
+        assertTrue(hiddenDir.renameTo(srcDir));
+
+        // Move: the cached flags of both indices are invalidated.
+        assertFalse(client.hasOfflineData(dstName));
+        final CountDownLatch signal = new CountDownLatch(1);
+        client.moveIndexOfflineAsync(srcName, dstName, new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                assertFalse(client.hasOfflineData(srcName));
+                assertTrue(client.hasOfflineData(dstName));
+
+                // Delete: the cached flag is invalidated.
+                client.deleteIndexOfflineAsync(dstName, new AssertCompletionHandler() {
+                    @Override
+                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                        assertNull(error);
+                        assertFalse(client.hasOfflineData(dstName));
+                        signal.countDown();
+                    }
+                });
+            }
+        });
+    }
+}
@@ -23,16 +23,26 @@
 
 package com.algolia.search.saas;
 
+import android.content.res.Resources;
+
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
-import org.mockito.internal.util.reflection.Whitebox;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RuntimeEnvironment;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
@@ -41,6 +51,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 /**
@@ -255,6 +268,63 @@ public class OfflineIndexTest extends OfflineTestBase  {
         });
     }
 
+    @Test
+    public void testSearchCache() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        index.enableSearchCache();
+        final OfflineIndex.WriteTransaction transaction1 = index.newTransaction();
+        transaction1.saveObjectSync(objects.get("snoopy"));
+        transaction1.commitSync();
+        index.searchAsync(new Query(), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNotNull(content);
+                assertEquals(1, content.optInt("nbHits"));
+                try {
+                    // Modifying the index must invalidate the cached results.
+                    final OfflineIndex.WriteTransaction transaction2 = index.newTransaction();
+                    transaction2.saveObjectSync(objects.get("woodstock"));
+                    transaction2.commitSync();
+                } catch (AlgoliaException e) {
+                    fail(e.getMessage());
+                }
+                index.searchAsync(new Query(), new AssertCompletionHandler() {
+                    @Override
+                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                        assertNotNull(content);
+                        assertEquals(2, content.optInt("nbHits"));
+                        signal.countDown();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testSearchRaw() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+        transaction.saveObjectsSync(new JSONArray(objects.values()));
+        transaction.commitSync();
+        index.searchRawAsync(new Query("snoopy"), new RawCompletionHandler() {
+            @Override
+            public void requestCompleted(byte[] content, AlgoliaException error) {
+                assertNull(error);
+                assertNotNull(content);
+                try {
+                    JSONObject json = new JSONObject(new String(content, "UTF-8"));
+                    assertEquals(1, json.optInt("nbHits"));
+                    assertEquals("Snoopy", json.optJSONArray("hits").optJSONObject(0).optString("name"));
+                } catch (JSONException | UnsupportedEncodingException e) {
+                    fail(e.getMessage());
+                }
+                signal.countDown();
+            }
+        });
+    }
+
     @Test
     public void testGetSetSettings() throws Exception {
         final CountDownLatch signal = new CountDownLatch(1);
@@ -430,16 +500,54 @@ public class OfflineIndexTest extends OfflineTestBase  {
         });
     }
 
+    @Test
+    public void testMultipleQueriesStopIfEnoughMatches() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+        transaction.saveObjectsAsync(new JSONArray(objects.values()), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                transaction.commitAsync(new AssertCompletionHandler() {
+                    @Override
+                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                        List<Query> queries = Arrays.asList(new Query("unknown"), new Query("snoopy").setHitsPerPage(1), new Query("woodstock"));
+                        index.multipleQueriesAsync(queries, Client.MultipleQueriesStrategy.STOP_IF_ENOUGH_MATCHES, new AssertCompletionHandler() {
+                            @Override
+                            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                assertNotNull(content);
+                                JSONArray results = content.optJSONArray("results");
+                                assertNotNull(results);
+                                assertEquals(3, results.length());
+                                // Results are returned in order, even though queries run in parallel.
+                                assertEquals(0, results.optJSONObject(0).optInt("nbHits"));
+                                assertTrue(results.optJSONObject(0).optBoolean("processed", true));
+                                assertEquals(1, results.optJSONObject(1).optInt("nbHits"));
+                                assertTrue(results.optJSONObject(1).optBoolean("processed", true));
+                                // The first query with enough matches stops processing.
+                                assertEquals(0, results.optJSONObject(2).optInt("nbHits"));
+                                assertFalse(results.optJSONObject(2).optBoolean("processed", true));
+                                signal.countDown();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
     /**
-     * Test adding more objects than the size of the internal in-memory buffer.
+     * Test adding more objects than the size of the internal in-memory buffer and of the temporary files.
      */
     @Test
     public void testAddManyObjects() throws Exception {
         final CountDownLatch signal = new CountDownLatch(1);
         final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        // Artifically reduce the in-memory buffer size and the temporary file size.
+        index.setSpillBufferSize(64);
+        index.setMaxSpillFileSize(512);
         final OfflineIndex.WriteTransaction transaction = index.newTransaction();
-        // Artifically reduce the in-memory buffer size.
-        Whitebox.setInternalState(transaction, "maxObjectsInMemory", 25);
         int objectCount = 0;
         for (int i = 0; i < 7; ++i) {
             List<JSONObject> objects = new ArrayList<>();
@@ -462,6 +570,66 @@ public class OfflineIndexTest extends OfflineTestBase  {
         });
     }
 
+    /**
+     * Test populating a transaction from several threads at the same time, and the precedence of saves/deletes.
+     */
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+        final int threadCount = 4;
+        final int objectsPerThread = 20;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; ++i) {
+            final int threadIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < objectsPerThread; ++j) {
+                            transaction.saveObjectSync(new JSONObject().put("objectID", String.format("%d-%d", threadIndex, j)));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty());
+
+        // Save after delete: the object is kept.
+        transaction.deleteObjectSync("1");
+        transaction.saveObjectSync(objects.get("snoopy"));
+        // Delete after save: the object is deleted.
+        transaction.saveObjectSync(objects.get("woodstock"));
+        transaction.deleteObjectSync("2");
+        transaction.commitSync();
+
+        index.browseAsync(new Query().setHitsPerPage(1000), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNotNull(content);
+                assertEquals(threadCount * objectsPerThread + 1, content.optInt("nbHits"));
+                index.getObjectAsync("2", new AssertCompletionHandler() {
+                    @Override
+                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                        assertNotNull(error);
+                        assertEquals(404, error.getStatusCode());
+                        signal.countDown();
+                    }
+                });
+            }
+        });
+    }
+
     @Test
     public void testRollback() throws Exception {
         final CountDownLatch signal = new CountDownLatch(1);
@@ -524,6 +692,40 @@ public class OfflineIndexTest extends OfflineTestBase  {
         });
     }
 
+    /**
+     * Test that a large batch, which is serialized by chunks, overrides objects saved earlier in the same transaction,
+     * and that its chunks are applied in order.
+     */
+    @Test
+    public void testLargeBatchOverridesPreviousSaves() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        final OfflineIndex index = client.getOfflineIndex(Helpers.getMethodName());
+        final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+        transaction.saveObjectsSync(new JSONArray().put(new JSONObject().put("objectID", "1").put("name", "Old")));
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i < 2500; ++i) {
+            batch.put(new JSONObject().put("objectID", "filler" + i));
+        }
+        // First chunk.
+        batch.put(0, new JSONObject().put("objectID", "1").put("name", "New"));
+        batch.put(1, new JSONObject().put("objectID", "2").put("name", "First chunk"));
+        // Last chunk.
+        batch.put(2499, new JSONObject().put("objectID", "2").put("name", "Last chunk"));
+        transaction.saveObjectsSync(batch);
+        transaction.commitSync();
+        index.getObjectsAsync(Arrays.asList("1", "2"), new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                JSONArray results = content.optJSONArray("results");
+                assertNotNull(results);
+                assertEquals("New", results.optJSONObject(0).optString("name"));
+                assertEquals("Last chunk", results.optJSONObject(1).optString("name"));
+                signal.countDown();
+            }
+        });
+    }
+
     @Test
     public void testBuild() {
         final CountDownLatch signal = new CountDownLatch(2);
@@ -564,6 +766,90 @@ public class OfflineIndexTest extends OfflineTestBase  {
         });
     }
 
+    @Test
+    public void testBuildFromRawResourcesSkipsIdenticalImport() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+
+        // Serve data files as raw resources.
+        File resourcesDir = new File(RuntimeEnvironment.application.getPackageResourcePath() + "/src/testOffline/res");
+        File rawDir = new File(resourcesDir, "raw");
+        final Map<Integer, File> rawFiles = new HashMap<>();
+        rawFiles.put(1, new File(rawDir, "settings.json"));
+        rawFiles.put(2, new File(rawDir, "objects.json"));
+        final Resources resources = mock(Resources.class);
+        when(resources.openRawResource(anyInt())).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return new FileInputStream(rawFiles.get((Integer) invocation.getArguments()[0]));
+            }
+        });
+        final int settingsResId = 1;
+        final int[] objectsResIds = new int[]{ 2 };
+
+        final OfflineIndex index = client.getOfflineIndex(Helpers.safeIndexName(Helpers.getMethodName()));
+        final File indexDir = client.getIndexDir(index.getName());
+
+        // First import: the resources are imported and stamped.
+        index.buildFromRawResources(resources, settingsResId, objectsResIds, new AssertCompletionHandler() {
+            @Override
+            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                assertNull(error);
+                assertTrue(index.hasOfflineData());
+                final long generation = client.getIndexGeneration(index.getName());
+                final RawResources.Stamp stamp = RawResources.getImported(indexDir);
+                assertNotNull(stamp);
+
+                // Same resources: the import is skipped.
+                index.buildFromRawResources(resources, settingsResId, objectsResIds, new AssertCompletionHandler() {
+                    @Override
+                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                        assertNull(error);
+                        assertEquals(generation, client.getIndexGeneration(index.getName()));
+
+                        // Stale fingerprint but same content: the import is skipped, and the stamp refreshed.
+                        RawResources.setImported(indexDir, new RawResources.Stamp(stamp.checksum, "stale"));
+                        index.buildFromRawResources(resources, settingsResId, objectsResIds, new AssertCompletionHandler() {
+                            @Override
+                            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                assertNull(error);
+                                assertEquals(generation, client.getIndexGeneration(index.getName()));
+                                assertEquals(stamp.fingerprint, RawResources.getImported(indexDir).fingerprint);
+
+                                // A transaction modifies the index: the stamp is cleared.
+                                final OfflineIndex.WriteTransaction transaction = index.newTransaction();
+                                transaction.saveObjectAsync(objects.get("snoopy"), new AssertCompletionHandler() {
+                                    @Override
+                                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                        assertNull(error);
+                                        transaction.commitAsync(new AssertCompletionHandler() {
+                                            @Override
+                                            public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                                assertNull(error);
+                                                assertNull(RawResources.getImported(indexDir));
+                                                final long committedGeneration = client.getIndexGeneration(index.getName());
+
+                                                // Same resources again: they are re-imported.
+                                                index.buildFromRawResources(resources, settingsResId, objectsResIds, new AssertCompletionHandler() {
+                                                    @Override
+                                                    public void doRequestCompleted(JSONObject content, AlgoliaException error) {
+                                                        assertNull(error);
+                                                        assertTrue(client.getIndexGeneration(index.getName()) > committedGeneration);
+                                                        assertNotNull(RawResources.getImported(indexDir));
+                                                        signal.countDown();
+                                                    }
+                                                });
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
     @Test
     public void testSearchForFacetValues() throws Exception {
         final CountDownLatch signal = new CountDownLatch(1);
@@ -115,7 +115,7 @@ public abstract class OfflineTestBase extends RobolectricTestCase {
         // WARNING: Robolectric cannot work with custom executors in `AsyncTask`, so we substitute the client's
         // executor with a Robolectric-compliant one.
         Whitebox.setInternalState(client, "searchExecutorService", new RoboExecutorService());
-        Whitebox.setInternalState(client, "localBuildExecutorService", new RoboExecutorService());
+        Whitebox.setInternalState(client, "buildScheduler", new BuildScheduler(new RoboExecutorService(), 1));
         Whitebox.setInternalState(client, "localSearchExecutorService", new RoboExecutorService());
         Whitebox.setInternalState(client, "transactionExecutorService", new RoboExecutorService());
 